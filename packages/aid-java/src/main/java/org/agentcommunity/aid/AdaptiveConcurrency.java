@@ -0,0 +1,240 @@
+package org.agentcommunity.aid;
+
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * AIMD limits on in-flight requests per upstream (each DoH endpoint URL and each agent {@code
+ * host:port}), used by {@link Discovery.DiscoveryOptions#adaptiveConcurrency}.
+ *
+ * <p>An upstream starts at {@code initialLimit}. Responses within {@code latencyTolerance} times
+ * the lowest recent latency raise its limit by about one per round trip; slower responses multiply
+ * it by {@code latencyBackoff}, and HTTP 429, 5xx or timeouts by {@code overloadBackoff}, at most
+ * once per round trip. Requests over the limit wait in a queue of at most {@code maxQueued}; the
+ * wait counts against the step's timeout and the request gets what is left. Requests beyond the
+ * queue, or still queued when the timeout runs out, fail with the step's usual error code and a
+ * message naming the overloaded upstream.
+ *
+ * <p>Limits live in this object: share one instance between option sets that talk to the same
+ * upstreams. An upstream with nothing in flight or queued for {@code idleEvictAfter} is forgotten
+ * and starts again from {@code initialLimit}.
+ */
+public final class AdaptiveConcurrency {
+  public int initialLimit = 20;
+  public int minLimit = 1;
+  public int maxLimit = 500;
+  public int maxQueued = 256;
+  public double latencyTolerance = 2.0;
+  public double latencyBackoff = 0.9;
+  public double overloadBackoff = 0.5;
+  public Duration idleEvictAfter = Duration.ofMinutes(1);
+
+  private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+  private final Object sweepLock = new Object();
+  private long lastSweep = System.nanoTime();
+  private int sizeAfterSweep;
+
+  /** Current limit for {@code upstream}, or -1 if it has not been contacted. */
+  public int limit(String upstream) {
+    Limiter l = limiters.get(upstream);
+    return l == null ? -1 : l.limit();
+  }
+
+  /** Requests currently in flight to {@code upstream}, not counting queued ones. */
+  public int inFlight(String upstream) {
+    Limiter l = limiters.get(upstream);
+    return l == null ? 0 : l.inFlight();
+  }
+
+  Limiter limiter(String upstream) {
+    Limiter l = limiters.get(upstream);
+    if (l != null) return l;
+    sweepIfDue();
+    return limiters.computeIfAbsent(upstream, Limiter::new);
+  }
+
+  /** Upstreams currently tracked. */
+  int size() {
+    return limiters.size();
+  }
+
+  // Run as new upstreams appear: once per idleEvictAfter, or sooner when the map has doubled
+  private void sweepIfDue() {
+    long now = System.nanoTime();
+    long idle = idleEvictAfter.toNanos();
+    synchronized (sweepLock) {
+      if (now - lastSweep < idle && limiters.size() < Math.max(64, 2 * sizeAfterSweep)) return;
+      lastSweep = now;
+      for (Limiter l : limiters.values()) {
+        if (l.retireIfIdle(now, idle)) limiters.remove(l.upstream, l);
+      }
+      sizeAfterSweep = limiters.size();
+    }
+  }
+
+  enum Signal { SUCCESS, OVERLOAD, IGNORE }
+
+  /** 2xx-4xx is a latency sample; 429, 5xx and timeouts are overload; other failures say nothing. */
+  static Signal classify(HttpResponse<?> res, Throwable err) {
+    if (err != null) {
+      Throwable c = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+      return c instanceof HttpTimeoutException ? Signal.OVERLOAD : Signal.IGNORE;
+    }
+    int status = res.statusCode();
+    return status == 429 || status / 100 == 5 ? Signal.OVERLOAD : Signal.SUCCESS;
+  }
+
+  final class Limiter {
+    private static final int WINDOW = 64;
+
+    final String upstream;
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    // Latency baseline: the lowest sample over the current and the previous window
+    private long windowMin = Long.MAX_VALUE;
+    private long previousMin = Long.MAX_VALUE;
+    private int windowCount;
+    private long lastDecrease;
+    private long lastUsed = System.nanoTime();
+    private boolean retired;
+
+    Limiter(String upstream) {
+      this.upstream = upstream;
+      this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    synchronized boolean retireIfIdle(long now, long idleNanos) {
+      retired = inFlight == 0 && waiters.isEmpty() && now - lastUsed >= idleNanos;
+      return retired;
+    }
+
+    synchronized int limit() { return (int) limit; }
+
+    synchronized int inFlight() { return inFlight; }
+
+    /**
+     * Runs {@code call} once a slot is free and classifies its outcome. {@code call} is given what
+     * is left of {@code timeout} after queueing, to use as its request timeout. Cancelling the
+     * returned future removes a queued call or cancels a running one.
+     */
+    <T> CompletableFuture<T> call(String errorCode, Duration timeout, Function<Duration, CompletableFuture<T>> call,
+        BiFunction<? super T, Throwable, Signal> classify) {
+      long deadline = System.nanoTime() + timeout.toNanos();
+      CompletableFuture<Void> slot = acquire(errorCode, timeout);
+      // Evicted while idle: the upstream's current limiter takes the call
+      if (slot == null) {
+        limiters.remove(upstream, this);
+        return limiter(upstream).call(errorCode, timeout, call, classify);
+      }
+      CompletableFuture<T> result = new CompletableFuture<>();
+      slot.whenComplete((v, err) -> {
+        if (err != null) {
+          result.completeExceptionally(err);
+          return;
+        }
+        long left = deadline - System.nanoTime();
+        if (result.isDone() || left <= 0) {
+          release(Signal.IGNORE, 0);
+          result.completeExceptionally(timedOut(errorCode, timeout));
+          return;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> inner;
+        try {
+          inner = call.apply(Duration.ofNanos(left));
+        } catch (RuntimeException e) {
+          release(Signal.IGNORE, 0);
+          result.completeExceptionally(e);
+          return;
+        }
+        result.whenComplete((r, e) -> { if (result.isCancelled()) inner.cancel(true); });
+        inner.whenComplete((r, e) -> {
+          release(inner.isCancelled() ? Signal.IGNORE : classify.apply(r, e), System.nanoTime() - start);
+          if (e != null) result.completeExceptionally(e);
+          else result.complete(r);
+        });
+      });
+      result.whenComplete((r, e) -> { if (result.isCancelled()) slot.cancel(true); });
+      return result;
+    }
+
+    private AidError timedOut(String errorCode, Duration timeout) {
+      return AidError.expected(errorCode, upstream + " overloaded: no slot within " + timeout.toMillis() + " ms");
+    }
+
+    // Null once retired; the caller then goes through the map again
+    private synchronized CompletableFuture<Void> acquire(String errorCode, Duration maxWait) {
+      if (retired) return null;
+      lastUsed = System.nanoTime();
+      if (inFlight < (int) limit && waiters.isEmpty()) {
+        inFlight++;
+        return CompletableFuture.completedFuture(null);
+      }
+      if (waiters.size() >= maxQueued) {
+        return CompletableFuture.failedFuture(AidError.expected(errorCode, upstream + " overloaded: " + inFlight
+            + " in flight (limit " + (int) limit + "), " + waiters.size() + " queued; request shed"));
+      }
+      CompletableFuture<Void> w = new CompletableFuture<>();
+      waiters.add(w);
+      w.whenComplete((v, err) -> {
+        if (err != null) synchronized (this) { waiters.remove(w); }
+      });
+      CompletableFuture.delayedExecutor(maxWait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> w.completeExceptionally(
+          timedOut(errorCode, maxWait)));
+      return w;
+    }
+
+    private void release(Signal signal, long nanos) {
+      List<CompletableFuture<Void>> granted = new ArrayList<>();
+      synchronized (this) {
+        inFlight--;
+        lastUsed = System.nanoTime();
+        adjust(signal, nanos);
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+          CompletableFuture<Void> w = waiters.poll();
+          if (w.isDone()) continue;
+          inFlight++;
+          granted.add(w);
+        }
+      }
+      // Completed outside the lock: callers start their requests from here
+      for (CompletableFuture<Void> w : granted) {
+        if (!w.complete(null)) release(Signal.IGNORE, 0);
+      }
+    }
+
+    private void adjust(Signal signal, long nanos) {
+      if (signal == Signal.IGNORE) return;
+      if (signal == Signal.SUCCESS) {
+        windowMin = Math.min(windowMin, nanos);
+        if (++windowCount == WINDOW) {
+          previousMin = windowMin;
+          windowMin = Long.MAX_VALUE;
+          windowCount = 0;
+        }
+        if (nanos <= Math.min(windowMin, previousMin) * latencyTolerance) {
+          limit = Math.min(maxLimit, limit + 1.0 / limit);
+          return;
+        }
+      }
+      long now = System.nanoTime();
+      long baseline = Math.min(windowMin, previousMin);
+      long roundTrip = baseline != Long.MAX_VALUE ? baseline : nanos;
+      if (lastDecrease != 0 && now - lastDecrease < roundTrip) return;
+      lastDecrease = now;
+      limit = Math.max(minLimit, limit * (signal == Signal.OVERLOAD ? overloadBackoff : latencyBackoff));
+    }
+  }
+}
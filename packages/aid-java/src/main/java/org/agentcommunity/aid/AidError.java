@@ -14,6 +14,21 @@ public class AidError extends RuntimeException {
     this(errorCode, ErrorCodes.messageFor(errorCode));
   }
 
+  /** For subclasses of routine outcomes; {@code stackTrace=false} makes them as cheap as {@link #expected}. */
+  protected AidError(String errorCode, String message, boolean stackTrace) {
+    super(message, null, stackTrace, stackTrace);
+    this.errorCode = errorCode;
+    this.code = ErrorCodes.codeFor(errorCode);
+  }
+
+  /**
+   * For outcomes that are routine in bulk discovery (missing or invalid records, unreachable DoH
+   * endpoints): no stack trace and no suppressed exceptions, so creating one is cheap.
+   */
+  static AidError expected(String errorCode, String message) {
+    return new AidError(errorCode, message, false);
+  }
+
   static final class ErrorCodes {
     private ErrorCodes() {}
 
@@ -0,0 +1,26 @@
+package org.agentcommunity.aid;
+
+/** Auth tokens ({@code auth}/{@code a}) as an enum; mirrors the generated {@code Constants.AUTH_*}. */
+public enum Auth {
+  NONE(Constants.AUTH_NONE),
+  PAT(Constants.AUTH_PAT),
+  APIKEY(Constants.AUTH_APIKEY),
+  BASIC(Constants.AUTH_BASIC),
+  OAUTH2_DEVICE(Constants.AUTH_OAUTH2_DEVICE),
+  OAUTH2_CODE(Constants.AUTH_OAUTH2_CODE),
+  MTLS(Constants.AUTH_MTLS),
+  CUSTOM(Constants.AUTH_CUSTOM);
+
+  public final String token;
+
+  Auth(String token) { this.token = token; }
+
+  /** Returns null for tokens this client does not know. */
+  public static Auth fromToken(String token) {
+    if (token == null) return null;
+    for (Auth a : values()) {
+      if (a.token.equals(token)) return a;
+    }
+    return null;
+  }
+}
@@ -10,7 +10,7 @@ final class Base58 {
     BigInteger n = BigInteger.ZERO;
     for (int i = 0; i < s.length(); i++) {
       int idx = ALPHABET.indexOf(s.charAt(i));
-      if (idx < 0) throw new AidError("ERR_SECURITY", "Invalid base58 character");
+      if (idx < 0) throw AidError.expected("ERR_SECURITY", "Invalid base58 character");
       n = n.multiply(BigInteger.valueOf(58)).add(BigInteger.valueOf(idx));
     }
     int leading = 0;
@@ -31,5 +31,26 @@ final class Base58 {
     System.arraycopy(bytes, 0, out, leading, bytes.length);
     return out;
   }
-}
 
+  static String encode(byte[] bytes) {
+    int leading = 0;
+    while (leading < bytes.length && bytes[leading] == 0) leading++;
+    // Repeated divmod 58 over a big-endian copy; digits come out least significant first
+    byte[] num = java.util.Arrays.copyOfRange(bytes, leading, bytes.length);
+    char[] out = new char[leading + num.length * 2];
+    int pos = out.length;
+    int start = 0;
+    while (start < num.length) {
+      int rem = 0;
+      for (int i = start; i < num.length; i++) {
+        int acc = (rem << 8) | (num[i] & 0xff);
+        num[i] = (byte) (acc / 58);
+        rem = acc % 58;
+      }
+      out[--pos] = ALPHABET.charAt(rem);
+      while (start < num.length && num[start] == 0) start++;
+    }
+    for (int i = 0; i < leading; i++) out[--pos] = '1';
+    return new String(out, pos, out.length - pos);
+  }
+}
@@ -0,0 +1,149 @@
+package org.agentcommunity.aid;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Memory-compact form of a validated {@link AidRecord} for large in-memory registries.
+ *
+ * <p>{@code v} is implicit, {@code proto}/{@code auth} are enum references, a multibase base58btc
+ * {@code pka} is held as its raw key bytes, and {@code dep} as epoch milliseconds. {@code kid},
+ * {@code desc} and {@code docs} repeat heavily across records and are shared through a bounded
+ * intern table, so untrusted input cannot grow it without limit. The string forms
+ * are derived on access and round-trip to the same {@code AidRecord}, except that {@code dep} is
+ * normalized to ISO-8601 UTC at millisecond precision.
+ */
+public final class CompactAidRecord {
+  public static final long NO_DEP = Long.MIN_VALUE;
+
+  private final Proto proto;
+  private final Auth auth;        // nullable
+  private final String uri;
+  private final String desc;      // nullable
+  private final String docs;      // nullable
+  private final String kid;       // nullable
+  private final byte[] pkaKey;    // nullable; decoded base58btc key
+  private final String pkaOther;  // nullable; pka kept verbatim when it is not base58btc multibase
+  private final long depMillis;
+
+  private CompactAidRecord(Proto proto, Auth auth, String uri, String desc, String docs, String kid,
+      byte[] pkaKey, String pkaOther, long depMillis) {
+    this.proto = proto;
+    this.auth = auth;
+    this.uri = uri;
+    this.desc = desc;
+    this.docs = docs;
+    this.kid = kid;
+    this.pkaKey = pkaKey;
+    this.pkaOther = pkaOther;
+    this.depMillis = depMillis;
+  }
+
+  /** Converts a record produced by {@link Parser}; throws {@code ERR_UNSUPPORTED_PROTO}/{@code ERR_INVALID_TXT} otherwise. */
+  public static CompactAidRecord of(AidRecord r) {
+    Proto proto = Proto.fromToken(r.proto);
+    if (proto == null) throw new AidError("ERR_UNSUPPORTED_PROTO", "Unsupported protocol: " + r.proto);
+    Auth auth = null;
+    if (r.auth != null) {
+      auth = Auth.fromToken(r.auth);
+      if (auth == null) throw new AidError("ERR_INVALID_TXT", "Invalid auth token: " + r.auth);
+    }
+    byte[] pkaKey = null;
+    String pkaOther = null;
+    if (r.pka != null) {
+      pkaKey = decodeMultibase(r.pka);
+      if (pkaKey == null) pkaOther = r.pka;
+    }
+    long dep = NO_DEP;
+    if (r.dep != null) {
+      try {
+        dep = Instant.parse(r.dep).toEpochMilli();
+      } catch (RuntimeException e) {
+        throw new AidError("ERR_INVALID_TXT", "dep MUST be an ISO 8601 UTC timestamp (e.g., 2026-01-01T00:00:00Z)");
+      }
+    }
+    return new CompactAidRecord(proto, auth, r.uri, intern(r.desc), intern(r.docs), intern(r.kid), pkaKey, pkaOther, dep);
+  }
+
+  public static CompactAidRecord parse(String txtRecord) {
+    return of(Parser.parse(txtRecord));
+  }
+
+  // Bounded stand-in for String.intern(): once full the table starts over, so values seen since are
+  // shared again; copies handed out earlier stay valid, only no longer deduplicated
+  private static final int MAX_INTERNED = 16_384;
+  private static final int MAX_INTERNED_LENGTH = 256;
+  private static final java.util.concurrent.ConcurrentHashMap<String, String> INTERNED = new java.util.concurrent.ConcurrentHashMap<>();
+
+  static String intern(String s) {
+    if (s == null || s.length() > MAX_INTERNED_LENGTH) return s;
+    String shared = INTERNED.get(s);
+    if (shared != null) return shared;
+    if (INTERNED.size() >= MAX_INTERNED) INTERNED.clear();
+    shared = INTERNED.putIfAbsent(s, s);
+    return shared != null ? shared : s;
+  }
+
+  static int internedCount() {
+    return INTERNED.size();
+  }
+
+  // 'z' + base58btc that re-encodes to the same text; anything else is kept verbatim
+  private static byte[] decodeMultibase(String pka) {
+    if (pka.length() < 2 || pka.charAt(0) != 'z') return null;
+    try {
+      byte[] key = Base58.decode(pka.substring(1));
+      return Base58.encode(key).equals(pka.substring(1)) ? key : null;
+    } catch (AidError e) {
+      return null;
+    }
+  }
+
+  public String v() { return Constants.SPEC_VERSION; }
+  public Proto protocol() { return proto; }
+  public Auth authScheme() { return auth; }
+  public String uri() { return uri; }
+  public String desc() { return desc; }
+  public String docs() { return docs; }
+  public String kid() { return kid; }
+  public String proto() { return proto.token; }
+  public String auth() { return auth == null ? null : auth.token; }
+
+  public String pka() {
+    if (pkaKey != null) return "z" + Base58.encode(pkaKey);
+    return pkaOther;
+  }
+
+  /** Raw public key bytes for a base58btc {@code pka}, or null. */
+  public byte[] pkaKey() {
+    return pkaKey == null ? null : pkaKey.clone();
+  }
+
+  /** {@link #NO_DEP} when the record has no deprecation timestamp. */
+  public long depEpochMillis() { return depMillis; }
+
+  public String dep() {
+    return depMillis == NO_DEP ? null : Instant.ofEpochMilli(depMillis).toString();
+  }
+
+  public AidRecord toAidRecord() {
+    return new AidRecord(Constants.SPEC_VERSION, uri, proto.token, auth(), desc, docs, dep(), pka(), kid);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof CompactAidRecord)) return false;
+    CompactAidRecord c = (CompactAidRecord) o;
+    return proto == c.proto && auth == c.auth && depMillis == c.depMillis && uri.equals(c.uri)
+        && Objects.equals(desc, c.desc) && Objects.equals(docs, c.docs) && Objects.equals(kid, c.kid)
+        && Arrays.equals(pkaKey, c.pkaKey) && Objects.equals(pkaOther, c.pkaOther);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = Objects.hash(proto, auth, uri, desc, docs, kid, pkaOther, depMillis);
+    return 31 * h + Arrays.hashCode(pkaKey);
+  }
+}
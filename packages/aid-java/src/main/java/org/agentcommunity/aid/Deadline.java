@@ -0,0 +1,42 @@
+package org.agentcommunity.aid;
+
+import java.time.Duration;
+
+/** Overall time budget shared by every network step of one discovery. */
+final class Deadline {
+  private static final Deadline NONE = new Deadline(null, 0L);
+
+  private final Duration budget;
+  private final long expiresAtNanos;
+
+  private Deadline(Duration budget, long expiresAtNanos) {
+    this.budget = budget;
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  static Deadline none() { return NONE; }
+
+  static Deadline after(Duration budget) {
+    if (budget == null) return NONE;
+    return new Deadline(budget, System.nanoTime() + budget.toNanos());
+  }
+
+  boolean expired() {
+    return budget != null && expiresAtNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * Timeout for the next step: {@code stepTimeout} capped to the time left. Throws {@code errorCode}
+   * once the budget is spent, so callers fail fast instead of issuing a request that cannot finish.
+   */
+  Duration remaining(Duration stepTimeout, String errorCode, String step) {
+    if (budget == null) return stepTimeout;
+    long left = expiresAtNanos - System.nanoTime();
+    if (left <= 0) throw exceeded(errorCode, "before " + step);
+    return stepTimeout == null || stepTimeout.toNanos() > left ? Duration.ofNanos(left) : stepTimeout;
+  }
+
+  AidError exceeded(String errorCode, String where) {
+    return AidError.expected(errorCode, "Discovery deadline of " + budget.toMillis() + "ms exceeded " + where);
+  }
+}
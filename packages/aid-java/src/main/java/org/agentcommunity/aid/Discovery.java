@@ -1,19 +1,23 @@
 package org.agentcommunity.aid;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.net.IDN;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public final class Discovery {
   private Discovery() {}
@@ -24,6 +28,147 @@ public final class Discovery {
     public boolean wellKnownFallback = true;
     public Duration wellKnownTimeout = Duration.ofSeconds(2);
     public boolean requireDnssec = false;
+    /** DoH JSON endpoints, ranked by observed latency and errors; queries are hedged across them. */
+    public List<String> dohEndpoints = List.of(DohClient.DEFAULT_ENDPOINT);
+    /** Latency percentile of the primary endpoint after which a hedged query is sent. */
+    public double dohHedgePercentile = 0.95;
+    /**
+     * Overall budget for the whole chain (DNS queries, handshakes, well-known fallback). Each step
+     * gets at most the time left; null means every step only gets its own timeout.
+     */
+    public Duration deadline;
+    /**
+     * Client for DoH, handshakes and the well-known fallback. It must use {@code
+     * HttpClient.Redirect.NEVER}, otherwise discovery throws IllegalArgumentException. Null uses a
+     * shared pooled client.
+     */
+    public java.net.http.HttpClient httpClient;
+    /** Receives the duration of each network step; null disables timing. */
+    public PhaseListener phaseListener;
+    /**
+     * Start the PKA handshakes of all TXT answers at once instead of one after another. The earliest
+     * valid answer in order still wins and errors are reported as in sequential mode.
+     */
+    public boolean parallelHandshakes = false;
+    /**
+     * Start the well-known fallback in the background once DNS has been outstanding this long. A
+     * DNS answer still wins; the early fetch is used only where the fallback would have run. Null
+     * disables the hedge.
+     */
+    public Duration wellKnownHedgeAfter;
+    /**
+     * Verified results are served from and stored here for their TTL; null disables caching. Not
+     * used when {@code requireDnssec} is set, since a cached result does not say how it was validated.
+     */
+    public DiscoveryCache cache;
+    /**
+     * Base URI of a {@link DiscoverySidecar} to resolve through, e.g. {@code http://127.0.0.1:8787}.
+     * If it cannot be reached, discovery runs locally with these options. The sidecar resolves with
+     * its own options, so it is skipped when {@code requireDnssec} is set or {@code
+     * wellKnownFallback} is off. Its request counts against {@code timeout} and {@code deadline}.
+     */
+    public java.net.URI sidecar;
+    /**
+     * Per-upstream AIMD limits for DoH queries and PKA handshakes; excess requests queue briefly
+     * or are shed with a clear error. Null sends every request at once.
+     */
+    public AdaptiveConcurrency adaptiveConcurrency;
+    /**
+     * Domains found to have no record (no TXT answer, and no well-known document when the fallback
+     * is on) are added here, and later lookups of them fail with {@code ERR_NO_RECORD} without any
+     * network request until the entry expires. Entries are kept apart by {@code wellKnownFallback}
+     * and {@code requireDnssec}: absence found without the fallback, or without DNSSEC, is not
+     * trusted by lookups that use them. Null disables it.
+     */
+    public NegativeIndex negativeIndex;
+
+    // NegativeIndex mode for these options; 0 is the default (fallback on, DNSSEC not required)
+    int negativeMode() {
+      return (wellKnownFallback ? 0 : 1) | (requireDnssec ? 2 : 0);
+    }
+    /** Sees the DoH response a DNS result was parsed from; used by {@link DiscoveryWatch}. */
+    java.util.function.Consumer<DoHResponse> answerListener;
+
+    DiscoveryOptions copy() {
+      DiscoveryOptions o = new DiscoveryOptions();
+      o.protocol = protocol;
+      o.timeout = timeout;
+      o.wellKnownFallback = wellKnownFallback;
+      o.wellKnownTimeout = wellKnownTimeout;
+      o.requireDnssec = requireDnssec;
+      o.dohEndpoints = dohEndpoints;
+      o.dohHedgePercentile = dohHedgePercentile;
+      o.deadline = deadline;
+      o.httpClient = httpClient;
+      o.phaseListener = phaseListener;
+      o.parallelHandshakes = parallelHandshakes;
+      o.wellKnownHedgeAfter = wellKnownHedgeAfter;
+      o.cache = cache;
+      o.sidecar = sidecar;
+      o.adaptiveConcurrency = adaptiveConcurrency;
+      o.negativeIndex = negativeIndex;
+      o.answerListener = answerListener;
+      return o;
+    }
+  }
+
+  /** A domain to {@link #prefetch}, optionally with the protocol to look up for it. */
+  public static final class DomainSpec {
+    public final String domain;
+    public final String protocol; // null: use DiscoveryOptions.protocol
+
+    public DomainSpec(String domain, String protocol) {
+      this.domain = Objects.requireNonNull(domain);
+      this.protocol = protocol;
+    }
+
+    public static DomainSpec of(String domain) {
+      return new DomainSpec(domain, null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof DomainSpec)) return false;
+      DomainSpec d = (DomainSpec) o;
+      return domain.equals(d.domain) && Objects.equals(protocol, d.protocol);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(domain, protocol); }
+
+    @Override
+    public String toString() { return protocol == null ? domain : domain + " (" + protocol + ")"; }
+  }
+
+  /** Outcome of {@link #prefetch}: how many domains resolved and why the others failed. */
+  public static final class PrefetchSummary {
+    public final int attempted;
+    public final int succeeded;
+    public final Map<DomainSpec, AidError> failures; // in input order
+
+    PrefetchSummary(int attempted, Map<DomainSpec, AidError> failures) {
+      this.attempted = attempted;
+      this.succeeded = attempted - failures.size();
+      this.failures = Collections.unmodifiableMap(failures);
+    }
+  }
+
+  /**
+   * Timing hook for load testing and metrics. {@code WELL_KNOWN} covers the fetch and, when the
+   * document has a {@code pka}, its handshake.
+   */
+  @FunctionalInterface
+  public interface PhaseListener {
+    String DNS = "dns";
+    String HANDSHAKE = "handshake";
+    String WELL_KNOWN = "wellknown";
+
+    /** {@code error} is null when the step succeeded. */
+    void onPhase(String phase, long nanos, AidError error);
+  }
+
+  private static void report(DiscoveryOptions options, String phase, long start, AidError error) {
+    if (options.phaseListener != null) options.phaseListener.onPhase(phase, System.nanoTime() - start, error);
   }
 
   public static final class DiscoveryResult {
@@ -33,29 +178,51 @@ public final class Discovery {
     public DiscoveryResult(AidRecord record, int ttl, String queryName) {
       this.record = record; this.ttl = ttl; this.queryName = queryName;
     }
+
+    /** For a cache hit: this result with its TTL cut to the time left, rounded up to whole seconds. */
+    DiscoveryResult expiringIn(long nanosLeft) {
+      long seconds = Math.max(1, (nanosLeft + 999_999_999L) / 1_000_000_000L);
+      return seconds >= ttl ? this : new DiscoveryResult(record, (int) seconds, queryName);
+    }
   }
 
   private static String toALabel(String domain) {
     try { return IDN.toASCII(domain); } catch (Exception e) { return domain; }
   }
 
-  // --- DoH Response DTOs for Jackson ---
-  @JsonIgnoreProperties(ignoreUnknown = true)
-  private static class DoHResponse {
-    @JsonProperty("Status")
-    public int status;
-    @JsonProperty("AD")
-    public boolean ad; // Authenticated Data (DNSSEC)
-    @JsonProperty("Answer")
-    public List<DoHAnswer> answer;
+  // --- DoH JSON response; unknown fields are ignored ---
+  static final class DoHResponse {
+    int status;
+    boolean ad; // Authenticated Data (DNSSEC)
+    List<DoHAnswer> answer;
+
+    static DoHResponse parse(String body) throws Json.JsonException {
+      Object root = Json.parse(body);
+      if (!(root instanceof Map)) throw new Json.JsonException("DoH response must be a JSON object");
+      Map<String, Object> obj = Json.asObject(root);
+      DoHResponse r = new DoHResponse();
+      r.status = Json.asInt(obj.get("Status"), "Status");
+      r.ad = Json.asBoolean(obj.get("AD"), "AD");
+      Object answers = obj.get("Answer");
+      if (answers != null) {
+        if (!(answers instanceof List)) throw new Json.JsonException("\"Answer\" must be an array");
+        r.answer = new ArrayList<>();
+        for (Object a : (List<?>) answers) {
+          if (!(a instanceof Map)) throw new Json.JsonException("\"Answer\" entries must be objects");
+          Map<String, Object> fields = Json.asObject(a);
+          DoHAnswer ans = new DoHAnswer();
+          ans.data = Json.asString(fields.get("data"), "data");
+          ans.ttl = Json.asInt(fields.get("TTL"), "TTL");
+          r.answer.add(ans);
+        }
+      }
+      return r;
+    }
   }
 
-  @JsonIgnoreProperties(ignoreUnknown = true)
-  private static class DoHAnswer {
-    @JsonProperty("data")
-    public String data;
-    @JsonProperty("TTL")
-    public int ttl;
+  static final class DoHAnswer {
+    String data;
+    int ttl;
   }
 
   private static class ParsedRecordWithTtl {
@@ -64,42 +231,328 @@ public final class Discovery {
     ParsedRecordWithTtl(AidRecord record, int ttl) { this.record = record; this.ttl = ttl; }
   }
 
-  private static DoHResponse queryTxtDoH(String fqdn, Duration timeout) {
-    String url = "https://cloudflare-dns.com/dns-query?name=" + URI.create("http://x/"+fqdn).getRawPath().substring(3) + "&type=TXT";
-    HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).connectTimeout(timeout).build();
-    HttpRequest req = HttpRequest.newBuilder(URI.create(url)).timeout(timeout).header("Accept", "application/dns-json").GET().build();
+  private static DoHResponse queryTxtDoH(String fqdn, DiscoveryOptions options, Deadline deadline) {
+    Duration timeout = deadline.remaining(options.timeout, "ERR_DNS_LOOKUP_FAILED", "DNS query for " + fqdn);
+    long start = System.nanoTime();
+    String body;
+    try {
+      body = DohClient.queryTxt(Http.orShared(options.httpClient), options.dohEndpoints, fqdn, timeout,
+          options.dohHedgePercentile, options.adaptiveConcurrency);
+      report(options, PhaseListener.DNS, start, null);
+    } catch (AidError e) {
+      report(options, PhaseListener.DNS, start, e);
+      throw e;
+    }
     try {
-      HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
-      if (res.statusCode() / 100 != 2) throw new AidError("ERR_DNS_LOOKUP_FAILED", "DoH HTTP "+res.statusCode());
-      ObjectMapper mapper = new ObjectMapper();
-      DoHResponse doh = mapper.readValue(res.body(), DoHResponse.class);
-      if (doh.status != 0) throw new AidError("ERR_DNS_LOOKUP_FAILED", "DoH status: " + doh.status);
-      if (doh.answer == null || doh.answer.isEmpty()) throw new AidError("ERR_NO_RECORD", "No TXT answers for "+fqdn);
-      // Clean up quoted string data from DoH response
+      DoHResponse doh = DoHResponse.parse(body);
+      if (doh.status != 0) throw AidError.expected("ERR_DNS_LOOKUP_FAILED", "DoH status: " + doh.status);
+      if (doh.answer == null) return doh;
+      // DoH JSON carries TXT data in presentation format: one or more quoted strings
       for (DoHAnswer ans : doh.answer) {
-        if (ans.data != null && ans.data.length() >= 2 && ans.data.startsWith("\"") && ans.data.endsWith("\""))
-          ans.data = ans.data.substring(1, ans.data.length()-1);
+        if (ans.data != null) ans.data = joinTxtStrings(ans.data);
       }
       return doh;
     } catch (AidError e) { throw e; }
     catch (Exception e) { throw new AidError("ERR_DNS_LOOKUP_FAILED", e.getMessage()); }
   }
 
-  private static ParsedRecordWithTtl parseFirstValid(List<DoHAnswer> answers, Duration timeout) {
+  /** TXT answers at {@code fqdn} without parsing or handshakes; throws {@code ERR_NO_RECORD} when empty. */
+  static DoHResponse queryTxtRaw(String fqdn, DiscoveryOptions options) {
+    DoHResponse doh = queryTxtDoH(fqdn, options, Deadline.after(options.deadline));
+    if (isEmpty(doh)) throw AidError.expected("ERR_NO_RECORD", "No TXT answers for "+fqdn);
+    return doh;
+  }
+
+  private static boolean isEmpty(DoHResponse doh) {
+    return doh.answer == null || doh.answer.isEmpty();
+  }
+
+  /**
+   * Joins presentation-format character-strings ({@code "a" "b"} becomes {@code ab}), resolving
+   * {@code \X} and {@code \DDD} escapes. Data that is not a well-formed sequence of quoted
+   * strings only has one surrounding pair of quotes removed, if present.
+   */
+  static String joinTxtStrings(String data) {
+    if (data.indexOf('"') < 0) return data;
+    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(data.length());
+    int i = 0;
+    int n = data.length();
+    while (i < n) {
+      char c = data.charAt(i);
+      if (c == ' ' || c == '\t') { i++; continue; }
+      if (c != '"') return stripOuterQuotes(data);
+      i++;
+      boolean closed = false;
+      while (i < n) {
+        c = data.charAt(i++);
+        if (c == '"') { closed = true; break; }
+        if (c == '\\' && i < n) {
+          if (i + 2 < n && isDigit(data.charAt(i)) && isDigit(data.charAt(i + 1)) && isDigit(data.charAt(i + 2))) {
+            int v = Integer.parseInt(data.substring(i, i + 3));
+            if (v > 255) return stripOuterQuotes(data);
+            out.write(v);
+            i += 3;
+            continue;
+          }
+          c = data.charAt(i++);
+        }
+        byte[] enc = String.valueOf(c).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        if (Character.isHighSurrogate(c) && i < n) {
+          enc = data.substring(i - 1, i + 1).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+          i++;
+        }
+        out.write(enc, 0, enc.length);
+      }
+      if (!closed) return stripOuterQuotes(data);
+    }
+    return new String(out.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+  }
+
+  private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
+
+  private static String stripOuterQuotes(String data) {
+    if (data.length() >= 2 && data.startsWith("\"") && data.endsWith("\"")) return data.substring(1, data.length() - 1);
+    return data;
+  }
+
+  private static ParsedRecordWithTtl parseFirstValid(List<DoHAnswer> answers, DiscoveryOptions options, Deadline deadline) {
+    if (options.parallelHandshakes && answers.size() > 1) return parseFirstValidParallel(answers, options, deadline);
     AidError last = null;
     for (DoHAnswer answer : answers) {
       try {
         AidRecord rec = Parser.parse(answer.data);
-        if (rec.pka != null) Handshake.performHandshake(rec.uri, rec.pka, rec.kid == null ? "" : rec.kid, timeout);
+        if (rec.pka != null && options.adaptiveConcurrency != null) {
+          await(startHandshake(rec, options, deadline), "ERR_SECURITY");
+        } else if (rec.pka != null) {
+          Duration t = deadline.remaining(options.timeout, "ERR_SECURITY", "PKA handshake with " + rec.uri);
+          long start = System.nanoTime();
+          try {
+            Handshake.performHandshake(rec.uri, rec.pka, rec.kid == null ? "" : rec.kid, t, Http.orShared(options.httpClient));
+            report(options, PhaseListener.HANDSHAKE, start, null);
+          } catch (AidError e) {
+            report(options, PhaseListener.HANDSHAKE, start, e);
+            throw e;
+          }
+        }
         return new ParsedRecordWithTtl(rec, answer.ttl);
       } catch (AidError e) { last = e; }
     }
-    throw last != null ? last : new AidError("ERR_NO_RECORD", "No valid AID record in TXT answers");
+    throw last != null ? last : AidError.expected("ERR_NO_RECORD", "No valid AID record in TXT answers");
+  }
+
+  private static ParsedRecordWithTtl parseFirstValidParallel(List<DoHAnswer> answers, DiscoveryOptions options, Deadline deadline) {
+    int n = answers.size();
+    AidRecord[] records = new AidRecord[n];
+    AidError[] parseErrors = new AidError[n];
+    List<CompletableFuture<Void>> handshakes = new ArrayList<>();
+    try {
+      // Answers after the first one without a PKA can never win
+      int candidates = n;
+      for (int i = 0; i < n; i++) {
+        handshakes.add(null);
+        try {
+          records[i] = Parser.parse(answers.get(i).data);
+        } catch (AidError e) {
+          parseErrors[i] = e;
+          continue;
+        }
+        if (records[i].pka == null) {
+          candidates = i + 1;
+          break;
+        }
+        handshakes.set(i, startHandshake(records[i], options, deadline));
+      }
+
+      AidError last = null;
+      for (int i = 0; i < candidates; i++) {
+        if (parseErrors[i] != null) { last = parseErrors[i]; continue; }
+        CompletableFuture<Void> h = handshakes.get(i);
+        if (h != null) {
+          try {
+            await(h, "ERR_SECURITY");
+          } catch (AidError e) { last = e; continue; }
+        }
+        return new ParsedRecordWithTtl(records[i], answers.get(i).ttl);
+      }
+      throw last != null ? last : AidError.expected("ERR_NO_RECORD", "No valid AID record in TXT answers");
+    } finally {
+      for (CompletableFuture<Void> h : handshakes) if (h != null) h.cancel(true);
+    }
   }
 
+  private static CompletableFuture<Void> startHandshake(AidRecord rec, DiscoveryOptions options, Deadline deadline) {
+    Duration t;
+    try {
+      t = deadline.remaining(options.timeout, "ERR_SECURITY", "PKA handshake with " + rec.uri);
+    } catch (AidError e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    long start = System.nanoTime();
+    CompletableFuture<Void> h = Handshake.performHandshakeAsync(rec.uri, rec.pka, rec.kid == null ? "" : rec.kid, t,
+        Http.orShared(options.httpClient), options.adaptiveConcurrency);
+    h.whenComplete((v, err) -> {
+      Throwable cause = err instanceof CompletionException ? err.getCause() : err;
+      if (cause == null) report(options, PhaseListener.HANDSHAKE, start, null);
+      else if (cause instanceof AidError) report(options, PhaseListener.HANDSHAKE, start, (AidError) cause);
+    });
+    return h;
+  }
+
+  private static <T> T await(CompletableFuture<T> f, String errorCode) {
+    try {
+      return f.get();
+    } catch (ExecutionException e) {
+      Throwable c = e.getCause();
+      if (c instanceof RuntimeException) throw (RuntimeException) c;
+      throw new AidError(errorCode, String.valueOf(c));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AidError(errorCode, "Interrupted");
+    }
+  }
+
+  /** Well-known fetch started while DNS is still outstanding; see {@link DiscoveryOptions#wellKnownHedgeAfter}. */
+  private static final class SpeculativeWellKnown {
+    private CompletableFuture<WellKnown.Document> fetch;
+    private long start;
+    private boolean closed;
+
+    SpeculativeWellKnown(String alabel, DiscoveryOptions options, Deadline deadline) {
+      CompletableFuture.delayedExecutor(options.wellKnownHedgeAfter.toNanos(), TimeUnit.NANOSECONDS)
+          .execute(() -> start(alabel, options, deadline));
+    }
+
+    private synchronized void start(String alabel, DiscoveryOptions options, Deadline deadline) {
+      if (closed) return;
+      start = System.nanoTime();
+      fetch = WellKnown.fetchAsync(alabel, options.wellKnownTimeout, false, deadline, Http.orShared(options.httpClient),
+          options.adaptiveConcurrency);
+    }
+
+    /** The fetch, or null if it has not started yet; no fetch starts afterwards. */
+    synchronized CompletableFuture<WellKnown.Document> take() {
+      closed = true;
+      return fetch;
+    }
+
+    synchronized long startNanos() { return start; }
+
+    void cancel() {
+      CompletableFuture<WellKnown.Document> f = take();
+      if (f != null) f.cancel(true);
+    }
+  }
+
+  /**
+   * Keeps re-resolving {@code domains} on their TTLs, at most {@code maxConcurrency} at a time, and
+   * reports added, changed, deprecated and removed records to {@code listener} until the returned
+   * watch is closed. Each domain's first successful resolution is reported as {@code ADDED}.
+   * {@code options.cache}, {@code options.sidecar} and {@code options.negativeIndex} are not used.
+   */
+  public static DiscoveryWatch watch(Collection<String> domains, DiscoveryWatch.Listener listener,
+      DiscoveryOptions options, int maxConcurrency) {
+    return new DiscoveryWatch(domains, listener, options, maxConcurrency);
+  }
+
+  public static DiscoveryWatch watch(Collection<String> domains, DiscoveryWatch.Listener listener, DiscoveryOptions options) {
+    return watch(domains, listener, options, 16);
+  }
+
+  public static DiscoveryWatch watch(Collection<String> domains, DiscoveryWatch.Listener listener) {
+    return watch(domains, listener, null, 16);
+  }
+
+  /**
+   * Resolves, parses and verifies {@code domains} ahead of first use, at most {@code maxConcurrency}
+   * at a time, and never throws for a failed domain. Results land in {@code options.cache} and the
+   * DoH and handshake connections stay open in the client's pool; without a cache only connections
+   * and DoH endpoint statistics are warmed.
+   */
+  public static PrefetchSummary prefetch(Collection<DomainSpec> domains, DiscoveryOptions options, int maxConcurrency) {
+    if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be >= 1");
+    DiscoveryOptions base = options == null ? new DiscoveryOptions() : options;
+    List<DomainSpec> specs = new ArrayList<>(new LinkedHashSet<>(domains));
+    List<CompletableFuture<DiscoveryOutcome>> pending = new ArrayList<>(specs.size());
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrency, specs.size())), r -> {
+      Thread t = new Thread(r, "aid-prefetch");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      for (DomainSpec spec : specs) {
+        DiscoveryOptions o = base;
+        if (spec.protocol != null) {
+          o = base.copy();
+          o.protocol = spec.protocol;
+        }
+        DiscoveryOptions opts = o;
+        pending.add(CompletableFuture.supplyAsync(() -> tryDiscover(spec.domain, opts), pool));
+      }
+      Map<DomainSpec, AidError> failures = new LinkedHashMap<>();
+      for (int i = 0; i < specs.size(); i++) {
+        DiscoveryOutcome o = await(pending.get(i), "ERR_DNS_LOOKUP_FAILED");
+        if (!o.isSuccess()) failures.put(specs.get(i), o.error);
+      }
+      return new PrefetchSummary(specs.size(), failures);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  public static PrefetchSummary prefetch(Collection<DomainSpec> domains, DiscoveryOptions options) {
+    return prefetch(domains, options, 16);
+  }
+
+  public static PrefetchSummary prefetch(Collection<DomainSpec> domains) {
+    return prefetch(domains, null, 16);
+  }
+
+  /**
+   * Throwing form of {@link #tryDiscover}. Routine failures such as {@code ERR_NO_RECORD} carry no
+   * stack trace.
+   */
   public static DiscoveryResult discover(String domain, DiscoveryOptions options) {
+    DiscoveryOutcome outcome = tryDiscover(domain, options);
+    if (outcome.error != null) throw outcome.error;
+    return outcome.result;
+  }
+
+  /** Discovers {@code domain}, reporting failure as an error outcome instead of throwing. */
+  public static DiscoveryOutcome tryDiscover(String domain, DiscoveryOptions options) {
+    try {
+      return DiscoveryOutcome.success(domain, lookup(domain, options));
+    } catch (AidError e) {
+      return DiscoveryOutcome.failure(domain, e);
+    }
+  }
+
+  private static DiscoveryResult lookup(String domain, DiscoveryOptions options) {
     if (options == null) options = new DiscoveryOptions();
+    Http.orShared(options.httpClient); // reject a redirect-following client before any cache hit
     String alabel = toALabel(domain);
+    DiscoveryCache cache = options.requireDnssec ? null : options.cache;
+    if (cache != null) {
+      DiscoveryResult cached = cache.get(alabel, options.protocol);
+      if (cached != null) return cached;
+    }
+    if (options.negativeIndex != null && options.negativeIndex.mightContain(alabel, options.protocol, options.negativeMode())) {
+      throw AidError.expected("ERR_NO_RECORD", "No AID record for " + alabel + " (negative index)");
+    }
+    Deadline deadline = Deadline.after(options.deadline);
+    // The sidecar cannot be asked for stricter checks than its own, so such lookups stay local
+    DiscoveryResult result = null;
+    if (options.sidecar != null && !options.requireDnssec && options.wellKnownFallback) {
+      Duration t = deadline.remaining(options.timeout, "ERR_DNS_LOOKUP_FAILED", "sidecar lookup of " + alabel);
+      result = SidecarClient.discover(options.sidecar, alabel, options.protocol, t, Http.orShared(options.httpClient));
+    }
+    if (result == null) {
+      result = resolve(alabel, options, deadline);
+    }
+    if (cache != null) cache.put(alabel, options.protocol, result);
+    return result;
+  }
+
+  private static DiscoveryResult resolve(String alabel, DiscoveryOptions options, Deadline deadline) {
     List<String> names = new ArrayList<>();
     if (options.protocol != null && !options.protocol.isEmpty()) {
       names.add(Constants.DNS_SUBDOMAIN + "._" + options.protocol + "." + alabel);
@@ -107,26 +560,60 @@ public final class Discovery {
     }
     names.add(Constants.DNS_SUBDOMAIN + "." + alabel);
 
-    AidError last = null;
-    for (String name : names) {
-      try {
-        DoHResponse res = queryTxtDoH(name, options.timeout);
-        if (options.requireDnssec && !res.ad) {
-          throw new AidError("ERR_SECURITY", "DNSSEC validation failed or was not available for " + name);
+    SpeculativeWellKnown speculative = options.wellKnownFallback && options.wellKnownHedgeAfter != null
+        ? new SpeculativeWellKnown(alabel, options, deadline) : null;
+    try {
+      AidError last = null;
+      // An empty answer without AD proves nothing to a lookup that requires DNSSEC
+      boolean unauthenticatedAbsence = false;
+      for (String name : names) {
+        try {
+          DoHResponse res = queryTxtDoH(name, options, deadline);
+          if (isEmpty(res)) {
+            unauthenticatedAbsence |= options.requireDnssec && !res.ad;
+            throw AidError.expected("ERR_NO_RECORD", "No TXT answers for "+name);
+          }
+          if (options.requireDnssec && !res.ad) {
+            throw new AidError("ERR_SECURITY", "DNSSEC validation failed or was not available for " + name);
+          }
+          ParsedRecordWithTtl p = parseFirstValid(res.answer, options, deadline);
+          if (options.answerListener != null) options.answerListener.accept(res);
+          return new DiscoveryResult(p.record, p.ttl, name);
+        } catch (AidError e) {
+          // A step cut short by the budget must not fall through to further queries or the fallback
+          if (deadline.expired()) throw deadline.exceeded(e.errorCode, "while resolving " + name);
+          last = e;
+          if (!"ERR_NO_RECORD".equals(e.errorCode)) break;
         }
-        ParsedRecordWithTtl p = parseFirstValid(res.answer, options.timeout);
-        return new DiscoveryResult(p.record, p.ttl, name);
-      } catch (AidError e) {
-        last = e;
-        if (!"ERR_NO_RECORD".equals(e.errorCode)) break;
       }
-    }
 
-    if (options.wellKnownFallback && last != null && ("ERR_NO_RECORD".equals(last.errorCode) || "ERR_DNS_LOOKUP_FAILED".equals(last.errorCode))) {
-      AidRecord rec = WellKnown.fetch(alabel, options.wellKnownTimeout, false);
-      return new DiscoveryResult(rec, Constants.DNS_TTL_MIN, Constants.DNS_SUBDOMAIN+"."+alabel);
+      if (options.wellKnownFallback && last != null && ("ERR_NO_RECORD".equals(last.errorCode) || "ERR_DNS_LOOKUP_FAILED".equals(last.errorCode))) {
+        CompletableFuture<WellKnown.Document> early = speculative != null ? speculative.take() : null;
+        long start = early != null ? speculative.startNanos() : System.nanoTime();
+        WellKnown.Document doc;
+        try {
+          doc = early != null
+              ? await(early, "ERR_FALLBACK_FAILED")
+              : WellKnown.fetch(alabel, options.wellKnownTimeout, false, deadline, Http.orShared(options.httpClient),
+                  options.adaptiveConcurrency);
+          report(options, PhaseListener.WELL_KNOWN, start, null);
+        } catch (AidError e) {
+          report(options, PhaseListener.WELL_KNOWN, start, e);
+          if (options.negativeIndex != null && "ERR_NO_RECORD".equals(last.errorCode) && !unauthenticatedAbsence
+              && WellKnown.isNotFound(e)) {
+            options.negativeIndex.add(alabel, options.protocol, options.negativeMode());
+          }
+          throw e;
+        }
+        return new DiscoveryResult(doc.record, doc.ttl, Constants.DNS_SUBDOMAIN+"."+alabel);
+      }
+      if (last == null) throw AidError.expected("ERR_DNS_LOOKUP_FAILED", "DNS query failed");
+      if (options.negativeIndex != null && "ERR_NO_RECORD".equals(last.errorCode) && !unauthenticatedAbsence) {
+        options.negativeIndex.add(alabel, options.protocol, options.negativeMode());
+      }
+      throw last;
+    } finally {
+      if (speculative != null) speculative.cancel();
     }
-    throw last != null ? last : new AidError("ERR_DNS_LOOKUP_FAILED", "DNS query failed");
   }
 }
-
@@ -0,0 +1,18 @@
+package org.agentcommunity.aid;
+
+/**
+ * Store for verified discovery results, consulted by {@link Discovery#discover} when set on {@link
+ * Discovery.DiscoveryOptions#cache}. A hit skips DNS, the PKA handshake and the well-known fallback.
+ * Implementations must be thread-safe.
+ */
+public interface DiscoveryCache {
+  /**
+   * {@code domain} is the A-label; {@code protocol} is null when none was requested. Null on a miss
+   * or once expired; a hit carries the seconds left as its {@code ttl}, so it is not re-cached for
+   * longer than the record lives.
+   */
+  Discovery.DiscoveryResult get(String domain, String protocol);
+
+  /** Keeps {@code result} for {@code result.ttl} seconds. */
+  void put(String domain, String protocol, Discovery.DiscoveryResult result);
+}
@@ -0,0 +1,35 @@
+package org.agentcommunity.aid;
+
+/** Result of discovering one domain: either a {@link Discovery.DiscoveryResult} or an {@link AidError}. */
+public final class DiscoveryOutcome {
+  public final String domain;
+  public final Discovery.DiscoveryResult result; // null on failure
+  public final AidError error;                   // null on success
+
+  private DiscoveryOutcome(String domain, Discovery.DiscoveryResult result, AidError error) {
+    this.domain = domain;
+    this.result = result;
+    this.error = error;
+  }
+
+  public static DiscoveryOutcome success(String domain, Discovery.DiscoveryResult result) {
+    return new DiscoveryOutcome(domain, result, null);
+  }
+
+  public static DiscoveryOutcome failure(String domain, AidError error) {
+    return new DiscoveryOutcome(domain, null, error);
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /** Symbolic error code such as {@code ERR_NO_RECORD}; null on success. */
+  public String errorCode() {
+    return error == null ? null : error.errorCode;
+  }
+
+  public String message() {
+    return error == null ? null : error.getMessage();
+  }
+}
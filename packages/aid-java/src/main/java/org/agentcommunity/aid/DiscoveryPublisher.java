@@ -0,0 +1,256 @@
+package org.agentcommunity.aid;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams {@link Discovery#discover} over a (possibly unbounded) source of domains.
+ *
+ * <p>Lookups start only against outstanding subscriber demand and never exceed {@code
+ * maxConcurrency}, so in-flight lookups and buffered outcomes stay bounded. Outcomes are emitted as
+ * they complete, in no particular order, each tagged with its domain. Failed lookups are emitted as
+ * failed outcomes; {@code onError} is reserved for a failing domain source and for exceptions other
+ * than {@link AidError} thrown by a lookup, such as a rejected {@code httpClient}. Unicast: only one
+ * subscriber is accepted.
+ */
+public final class DiscoveryPublisher implements Flow.Publisher<DiscoveryOutcome> {
+  private final Iterator<String> iterator;
+  private final Flow.Publisher<String> upstream;
+  private final Discovery.DiscoveryOptions options;
+  private final int maxConcurrency;
+  private final Executor executor;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  public DiscoveryPublisher(Iterator<String> domains, Discovery.DiscoveryOptions options, int maxConcurrency) {
+    this(Objects.requireNonNull(domains), null, options, maxConcurrency, null);
+  }
+
+  public DiscoveryPublisher(Flow.Publisher<String> domains, Discovery.DiscoveryOptions options, int maxConcurrency) {
+    this(null, Objects.requireNonNull(domains), options, maxConcurrency, null);
+  }
+
+  /** As above, running lookups on {@code executor} instead of a private pool of {@code maxConcurrency} threads. */
+  public DiscoveryPublisher(Iterator<String> domains, Discovery.DiscoveryOptions options, int maxConcurrency, Executor executor) {
+    this(Objects.requireNonNull(domains), null, options, maxConcurrency, executor);
+  }
+
+  public DiscoveryPublisher(Flow.Publisher<String> domains, Discovery.DiscoveryOptions options, int maxConcurrency, Executor executor) {
+    this(null, Objects.requireNonNull(domains), options, maxConcurrency, executor);
+  }
+
+  private DiscoveryPublisher(Iterator<String> iterator, Flow.Publisher<String> upstream,
+      Discovery.DiscoveryOptions options, int maxConcurrency, Executor executor) {
+    if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be >= 1");
+    this.iterator = iterator;
+    this.upstream = upstream;
+    this.options = options;
+    this.maxConcurrency = maxConcurrency;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super DiscoveryOutcome> subscriber) {
+    Objects.requireNonNull(subscriber);
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        public void request(long n) {}
+        public void cancel() {}
+      });
+      subscriber.onError(new IllegalStateException("DiscoveryPublisher allows only one subscriber"));
+      return;
+    }
+    Subscription s = new Subscription(subscriber);
+    subscriber.onSubscribe(s);
+    if (upstream != null) upstream.subscribe(s.source);
+    s.drain();
+  }
+
+  private final class Subscription implements Flow.Subscription {
+    private final Flow.Subscriber<? super DiscoveryOutcome> downstream;
+    private final ExecutorService ownPool;
+    private final Executor runOn;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Queue<DiscoveryOutcome> completed = new ConcurrentLinkedQueue<>();
+    private final Source source = new Source();
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+    private final AtomicReference<Throwable> lookupError = new AtomicReference<>();
+
+    // Only touched inside drain()
+    private long emitted;
+    private int inFlight; // started and not yet emitted
+    private boolean done;
+    private Throwable sourceError;
+
+    Subscription(Flow.Subscriber<? super DiscoveryOutcome> downstream) {
+      this.downstream = downstream;
+      if (executor != null) {
+        ownPool = null;
+        runOn = executor;
+      } else {
+        ownPool = Executors.newFixedThreadPool(maxConcurrency, r -> {
+          Thread t = new Thread(r, "aid-discovery-publisher");
+          t.setDaemon(true);
+          return t;
+        });
+        runOn = ownPool;
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("non-positive request: " + n);
+      } else {
+        requested.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      drain();
+    }
+
+    void drain() {
+      if (wip.getAndIncrement() != 0) return;
+      int missed = 1;
+      do {
+        if (done) return;
+        if (cancelled || invalidRequest != null || lookupError.get() != null) {
+          terminate(cancelled ? null : invalidRequest != null ? invalidRequest : lookupError.get());
+          return;
+        }
+        DiscoveryOutcome o;
+        while (emitted < requested.get() && (o = completed.poll()) != null) {
+          inFlight--;
+          emitted++;
+          downstream.onNext(o);
+          if (cancelled) break;
+        }
+        if (cancelled) continue;
+
+        try {
+          while (inFlight < maxConcurrency && emitted + inFlight < requested.get()) {
+            String domain = nextDomain();
+            if (domain == null) break;
+            CompletableFuture<DiscoveryOutcome> f = CompletableFuture.supplyAsync(() -> Discovery.tryDiscover(domain, options), runOn);
+            inFlight++;
+            f.whenComplete((res, err) -> {
+              // tryDiscover reports AidErrors as outcomes; anything else is a bug or misconfiguration
+              if (err != null) lookupError.compareAndSet(null, err instanceof CompletionException && err.getCause() != null ? err.getCause() : err);
+              else completed.offer(res);
+              drain();
+            });
+          }
+        } catch (RuntimeException e) {
+          // Iterator failures and rejected executions end the stream once in-flight lookups drain
+          if (sourceError == null) sourceError = e;
+        }
+        if (upstream != null) source.topUp(Math.min(maxConcurrency - inFlight, requested.get() - emitted - inFlight));
+
+        if (inFlight == 0 && sourceExhausted()) {
+          terminate(sourceError != null ? sourceError : source.error);
+          return;
+        }
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private String nextDomain() {
+      if (sourceError != null) return null;
+      if (iterator != null) return iterator.hasNext() ? iterator.next() : null;
+      return source.received.poll();
+    }
+
+    private boolean sourceExhausted() {
+      if (sourceError != null) return true;
+      if (iterator == null) return source.done && source.received.isEmpty();
+      try {
+        return !iterator.hasNext();
+      } catch (RuntimeException e) {
+        sourceError = e;
+        return true;
+      }
+    }
+
+    private void terminate(Throwable error) {
+      done = true;
+      source.cancel();
+      if (ownPool != null) ownPool.shutdownNow();
+      if (cancelled) return;
+      if (error != null) downstream.onError(error);
+      else downstream.onComplete();
+    }
+
+    /** Subscriber side for a {@link Flow.Publisher} of domains; requests only what can be started. */
+    private final class Source implements Flow.Subscriber<String> {
+      final Queue<String> received = new ConcurrentLinkedQueue<>();
+      private final AtomicLong receivedCount = new AtomicLong();
+      private volatile Flow.Subscription subscription;
+      private long upstreamRequested; // drain() only
+      volatile boolean done;
+      volatile Throwable error;
+
+      void topUp(long capacity) {
+        Flow.Subscription s = subscription;
+        if (s == null || done) return;
+        long outstanding = upstreamRequested - receivedCount.get();
+        long want = capacity - received.size() - outstanding;
+        if (want > 0) {
+          upstreamRequested += want;
+          s.request(want);
+        }
+      }
+
+      void cancel() {
+        Flow.Subscription s = subscription;
+        if (s != null) s.cancel();
+      }
+
+      @Override
+      public void onSubscribe(Flow.Subscription s) {
+        if (subscription != null) {
+          s.cancel();
+          return;
+        }
+        subscription = s;
+        drain();
+      }
+
+      @Override
+      public void onNext(String domain) {
+        received.offer(domain);
+        receivedCount.incrementAndGet();
+        drain();
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        error = t;
+        done = true;
+        drain();
+      }
+
+      @Override
+      public void onComplete() {
+        done = true;
+        drain();
+      }
+    }
+  }
+}
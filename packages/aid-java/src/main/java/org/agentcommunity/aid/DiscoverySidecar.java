@@ -0,0 +1,229 @@
+package org.agentcommunity.aid;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server that resolves for many processes from one cache.
+ *
+ * <p>{@code GET /discover?domain=<domain>[&protocol=<proto>][&format=json|binary]} runs {@link
+ * Discovery#discover} with the server's options. Results are shared through the options' {@link
+ * DiscoveryCache} for their TTL, and concurrent requests for the same domain and protocol wait for a
+ * single resolution. Successful responses are JSON ({@code {"ttl":..,"queryName":..,"record":{..}}},
+ * absent fields omitted) or the {@link RecordCodec} binary form ({@code format=binary} or {@code
+ * Accept: application/vnd.aid.record}). Failures carry the symbolic error code in the {@code
+ * AID-Error-Code} header, with HTTP 404 for {@code ERR_NO_RECORD}, 400 for a bad request and 502
+ * otherwise.
+ *
+ * <p>Java clients use it by setting {@link Discovery.DiscoveryOptions#sidecar}. Bind it to loopback;
+ * it has no authentication.
+ */
+public final class DiscoverySidecar implements AutoCloseable {
+  public static final String PATH = "/discover";
+  public static final String ERROR_HEADER = "AID-Error-Code";
+
+  private final HttpServer server;
+  private final ExecutorService pool;
+  private final Discovery.DiscoveryOptions options;
+  private final ConcurrentHashMap<String, CompletableFuture<Discovery.DiscoveryResult>> inFlight = new ConcurrentHashMap<>();
+  final AtomicLong resolutions = new AtomicLong();
+
+  public DiscoverySidecar(InetSocketAddress address, Discovery.DiscoveryOptions options) throws IOException {
+    this(address, options, 32);
+  }
+
+  /** {@code options} are copied; a cache is added if none is set. {@code threads} bounds concurrent requests. */
+  public DiscoverySidecar(InetSocketAddress address, Discovery.DiscoveryOptions options, int threads) throws IOException {
+    this.options = (options == null ? new Discovery.DiscoveryOptions() : options).copy();
+    this.options.sidecar = null;
+    if (this.options.cache == null) this.options.cache = new InMemoryDiscoveryCache();
+    pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "aid-sidecar");
+      t.setDaemon(true);
+      return t;
+    });
+    server = HttpServer.create(address, 0);
+    server.setExecutor(pool);
+    server.createContext(PATH, this::handle);
+  }
+
+  public DiscoverySidecar start() {
+    server.start();
+    return this;
+  }
+
+  public InetSocketAddress address() {
+    return server.getAddress();
+  }
+
+  /** Base URI to put in {@link Discovery.DiscoveryOptions#sidecar}. */
+  public URI uri() {
+    InetSocketAddress a = server.getAddress();
+    String host = a.getAddress().getHostAddress();
+    if (host.indexOf(':') >= 0) host = "[" + host + "]";
+    return URI.create("http://" + host + ":" + a.getPort());
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    pool.shutdownNow();
+  }
+
+  private void handle(HttpExchange ex) throws IOException {
+    try {
+      if (!"GET".equals(ex.getRequestMethod())) {
+        ex.getResponseHeaders().set("Allow", "GET");
+        send(ex, 405, "text/plain; charset=utf-8", new byte[0]);
+        return;
+      }
+      Map<String, String> q = query(ex.getRequestURI().getRawQuery());
+      String domain = q.get("domain");
+      String protocol = q.get("protocol");
+      boolean binary = "binary".equals(q.get("format"))
+          || (q.get("format") == null && String.valueOf(ex.getRequestHeaders().getFirst("Accept")).contains(RecordCodec.CONTENT_TYPE));
+      if (domain == null || domain.isEmpty()) {
+        sendError(ex, 400, null, "Missing domain parameter", binary);
+        return;
+      }
+      Discovery.DiscoveryResult result;
+      try {
+        result = resolve(domain.toLowerCase(Locale.ROOT), protocol == null || protocol.isEmpty() ? null : protocol);
+      } catch (AidError e) {
+        sendError(ex, "ERR_NO_RECORD".equals(e.errorCode) ? 404 : 502, e.errorCode, e.getMessage(), binary);
+        return;
+      }
+      if (binary) {
+        send(ex, 200, RecordCodec.CONTENT_TYPE, RecordCodec.encode(result));
+      } else {
+        send(ex, 200, "application/json", json(result).getBytes(StandardCharsets.UTF_8));
+      }
+    } finally {
+      ex.close();
+    }
+  }
+
+  // Coalesces concurrent lookups of the same key onto one Discovery.discover call
+  Discovery.DiscoveryResult resolve(String domain, String protocol) {
+    String key = InMemoryDiscoveryCache.key(domain, protocol);
+    CompletableFuture<Discovery.DiscoveryResult> mine = new CompletableFuture<>();
+    CompletableFuture<Discovery.DiscoveryResult> shared = inFlight.putIfAbsent(key, mine);
+    if (shared == null) {
+      try {
+        Discovery.DiscoveryOptions o = options;
+        if (protocol != null) {
+          o = options.copy();
+          o.protocol = protocol;
+        }
+        resolutions.incrementAndGet();
+        mine.complete(Discovery.discover(domain, o));
+      } catch (RuntimeException e) {
+        mine.completeExceptionally(e);
+      } finally {
+        inFlight.remove(key, mine);
+      }
+      shared = mine;
+    }
+    try {
+      return shared.get();
+    } catch (ExecutionException e) {
+      Throwable c = e.getCause();
+      if (c instanceof AidError) throw (AidError) c;
+      throw new AidError("ERR_DNS_LOOKUP_FAILED", String.valueOf(c.getMessage()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AidError("ERR_DNS_LOOKUP_FAILED", "Interrupted");
+    }
+  }
+
+  private static Map<String, String> query(String raw) {
+    Map<String, String> out = new HashMap<>();
+    if (raw == null) return out;
+    for (String pair : raw.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq <= 0) continue;
+      out.putIfAbsent(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+          URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+    }
+    return out;
+  }
+
+  private static void sendError(HttpExchange ex, int status, String errorCode, String message, boolean binary) throws IOException {
+    if (errorCode != null) ex.getResponseHeaders().set(ERROR_HEADER, errorCode);
+    if (binary) {
+      send(ex, status, "text/plain; charset=utf-8", String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    StringBuilder sb = new StringBuilder("{");
+    if (errorCode != null) {
+      sb.append("\"errorCode\":").append(quote(errorCode)).append(",\"code\":").append(AidError.ErrorCodes.codeFor(errorCode)).append(',');
+    }
+    sb.append("\"message\":").append(quote(String.valueOf(message))).append('}');
+    send(ex, status, "application/json", sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+    ex.getResponseHeaders().set("Content-Type", contentType);
+    ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    if (body.length > 0) try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+  }
+
+  static String json(Discovery.DiscoveryResult r) {
+    AidRecord a = r.record;
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"ttl\":").append(r.ttl).append(",\"queryName\":").append(quote(r.queryName)).append(",\"record\":{");
+    String[] names = {"v", "uri", "proto", "auth", "desc", "docs", "dep", "pka", "kid"};
+    String[] values = {a.v, a.uri, a.proto, a.auth, a.desc, a.docs, a.dep, a.pka, a.kid};
+    boolean first = true;
+    for (int i = 0; i < names.length; i++) {
+      if (values[i] == null) continue;
+      if (!first) sb.append(',');
+      first = false;
+      sb.append('"').append(names[i]).append("\":").append(quote(values[i]));
+    }
+    return sb.append("}}").toString();
+  }
+
+  private static String quote(String s) {
+    StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"': sb.append("\\\""); break;
+        case '\\': sb.append("\\\\"); break;
+        case '\n': sb.append("\\n"); break;
+        case '\r': sb.append("\\r"); break;
+        case '\t': sb.append("\\t"); break;
+        default:
+          if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+          else sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  /** Runs a sidecar on 127.0.0.1; {@code --port=8787} by default. */
+  public static void main(String[] args) throws IOException {
+    int port = 8787;
+    for (String a : args) {
+      if (a.startsWith("--port=")) port = Integer.parseInt(a.substring("--port=".length()));
+    }
+    DiscoverySidecar s = new DiscoverySidecar(new InetSocketAddress("127.0.0.1", port), null).start();
+    System.out.println("AID discovery sidecar listening on " + s.uri() + PATH);
+  }
+}
@@ -0,0 +1,249 @@
+package org.agentcommunity.aid;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-resolves a set of domains on their own TTLs and reports record changes; see {@link
+ * Discovery#watch}.
+ *
+ * <p>Each refresh is scheduled at a random point in the last fifth of the record's TTL, clamped to
+ * {@link Constants#DNS_TTL_MIN}..{@link Constants#DNS_TTL_MAX} seconds, so domains resolved together
+ * drift apart. A refresh first re-queries the TXT name the record was found under and compares a
+ * fingerprint of the raw answers with that of the answers the record was parsed from; only when they
+ * differ is the record parsed and its PKA handshake repeated. Records from the well-known fallback
+ * are re-fetched each time, as a conditional request when the server sent validators.
+ * Domains without a record are rechecked after {@link Constants#DNS_TTL_MIN} seconds. Only proof of
+ * absence counts as a removal: no TXT record, a well-known 404 or 410, or a record that no longer
+ * parses. Other failures, such as a DNS, fallback or handshake error, keep the last record and retry
+ * on the usual schedule.
+ */
+public final class DiscoveryWatch implements AutoCloseable {
+  public enum EventType { ADDED, CHANGED, REMOVED, DEPRECATED }
+
+  /**
+   * {@code DEPRECATED} is sent instead of {@code CHANGED} when the new record carries a {@code dep}
+   * the previous one did not have; other fields may have changed with it.
+   */
+  public static final class Event {
+    public final EventType type;
+    public final String domain;
+    public final AidRecord previous; // null for ADDED
+    public final AidRecord current;  // null for REMOVED
+    public final AidError error;     // why the record is gone, for REMOVED
+
+    Event(EventType type, String domain, AidRecord previous, AidRecord current, AidError error) {
+      this.type = type;
+      this.domain = domain;
+      this.previous = previous;
+      this.current = current;
+      this.error = error;
+    }
+
+    @Override
+    public String toString() { return type + " " + domain; }
+  }
+
+  /** Called from the watch's worker threads; must not block for long. */
+  @FunctionalInterface
+  public interface Listener {
+    void onEvent(Event event);
+  }
+
+  private static final class Watched {
+    final String domain;
+    AidRecord record;
+    String queryName;
+    int ttl = Constants.DNS_TTL_MIN;
+    long fingerprint;
+    boolean hasFingerprint;
+    ScheduledFuture<?> next;
+    Watched(String domain) { this.domain = domain; }
+  }
+
+  private final Discovery.DiscoveryOptions options;
+  private final Listener listener;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final Map<String, Watched> watched = new ConcurrentHashMap<>();
+  private final long minRefreshMillis;
+  private final long maxRefreshMillis;
+  private volatile boolean closed;
+
+  DiscoveryWatch(Collection<String> domains, Listener listener, Discovery.DiscoveryOptions options, int maxConcurrency) {
+    this(domains, listener, options, maxConcurrency,
+        Duration.ofSeconds(Constants.DNS_TTL_MIN), Duration.ofSeconds(Constants.DNS_TTL_MAX));
+  }
+
+  /** Refresh intervals are clamped to {@code minRefresh}..{@code maxRefresh}; tests shorten them. */
+  DiscoveryWatch(Collection<String> domains, Listener listener, Discovery.DiscoveryOptions options, int maxConcurrency,
+      Duration minRefresh, Duration maxRefresh) {
+    if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be >= 1");
+    this.minRefreshMillis = Math.max(1, minRefresh.toMillis());
+    this.maxRefreshMillis = Math.max(minRefreshMillis, maxRefresh.toMillis());
+    this.listener = Objects.requireNonNull(listener);
+    // Always go to the network: a cache, sidecar or negative index would hide changes until it expires
+    this.options = (options == null ? new Discovery.DiscoveryOptions() : options).copy();
+    this.options.cache = null;
+    this.options.sidecar = null;
+    this.options.negativeIndex = null;
+    scheduler = new ScheduledThreadPoolExecutor(maxConcurrency, r -> {
+      Thread t = new Thread(r, "aid-watch");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.setRemoveOnCancelPolicy(true);
+    for (String d : domains) add(d);
+  }
+
+  /** Starts watching {@code domain}; its first resolution reports {@code ADDED} if it has a record. */
+  public void add(String domain) {
+    if (closed) throw new IllegalStateException("DiscoveryWatch is closed");
+    Watched w = new Watched(domain);
+    if (watched.putIfAbsent(domain, w) == null) schedule(w, 0);
+  }
+
+  /** Stops watching {@code domain} without reporting an event. */
+  public void remove(String domain) {
+    Watched w = watched.remove(domain);
+    if (w != null) {
+      synchronized (w) {
+        if (w.next != null) w.next.cancel(false);
+      }
+    }
+  }
+
+  public Set<String> domains() {
+    return java.util.Collections.unmodifiableSet(watched.keySet());
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    watched.clear();
+    scheduler.shutdownNow();
+  }
+
+  private void schedule(Watched w, long delayMillis) {
+    if (closed || watched.get(w.domain) != w) return;
+    synchronized (w) {
+      try {
+        w.next = scheduler.schedule(() -> refresh(w), delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // closed concurrently
+      }
+    }
+  }
+
+  private long jittered(int ttlSeconds) {
+    long ttlMillis = Math.min(maxRefreshMillis, Math.max(minRefreshMillis, ttlSeconds * 1000L));
+    return ttlMillis - (long) (ThreadLocalRandom.current().nextDouble() * ttlMillis / 5);
+  }
+
+  private void refresh(Watched w) {
+    if (closed || watched.get(w.domain) != w) return;
+    if (w.record != null && w.hasFingerprint) {
+      Discovery.DoHResponse raw = queryRaw(w.queryName);
+      if (raw != null && fingerprint(raw) == w.fingerprint) {
+        w.ttl = minTtl(raw);
+        schedule(w, jittered(w.ttl));
+        return;
+      }
+    }
+
+    // Fingerprint the answers the record is parsed from; none when it came from the well-known fallback
+    Discovery.DoHResponse[] parsedFrom = new Discovery.DoHResponse[1];
+    Discovery.DiscoveryOptions o2 = options.copy();
+    o2.answerListener = res -> parsedFrom[0] = res;
+    DiscoveryOutcome o = Discovery.tryDiscover(w.domain, o2);
+    if (o.isSuccess()) {
+      AidRecord previous = w.record;
+      AidRecord current = o.result.record;
+      w.record = current;
+      w.ttl = o.result.ttl;
+      w.queryName = o.result.queryName;
+      w.hasFingerprint = parsedFrom[0] != null;
+      if (parsedFrom[0] != null) w.fingerprint = fingerprint(parsedFrom[0]);
+      if (previous == null) {
+        emit(new Event(EventType.ADDED, w.domain, null, current, null));
+      } else if (!same(previous, current)) {
+        boolean deprecated = current.dep != null && !current.dep.equals(previous.dep);
+        emit(new Event(deprecated ? EventType.DEPRECATED : EventType.CHANGED, w.domain, previous, current, null));
+      }
+      schedule(w, jittered(w.ttl));
+    } else if (!provesAbsence(o.error)) {
+      schedule(w, jittered(w.ttl));
+    } else {
+      AidRecord previous = w.record;
+      w.record = null;
+      w.queryName = null;
+      w.hasFingerprint = false;
+      w.ttl = Constants.DNS_TTL_MIN;
+      if (previous != null) emit(new Event(EventType.REMOVED, w.domain, previous, null, o.error));
+      schedule(w, jittered(0));
+    }
+  }
+
+  private static boolean provesAbsence(AidError e) {
+    switch (e.errorCode) {
+      case "ERR_NO_RECORD":
+      case "ERR_INVALID_TXT":
+      case "ERR_UNSUPPORTED_PROTO":
+        return true;
+      default:
+        return WellKnown.isNotFound(e);
+    }
+  }
+
+  private Discovery.DoHResponse queryRaw(String fqdn) {
+    try {
+      return Discovery.queryTxtRaw(fqdn, options);
+    } catch (AidError e) {
+      return null;
+    }
+  }
+
+  private void emit(Event e) {
+    if (closed) return;
+    try {
+      listener.onEvent(e);
+    } catch (RuntimeException ignored) {
+      // a failing listener must not stop the schedule
+    }
+  }
+
+  // Order-independent: resolvers may return the same TXT set in any order
+  static long fingerprint(Discovery.DoHResponse res) {
+    long sum = res.ad ? 1 : 0;
+    for (Discovery.DoHAnswer a : res.answer) {
+      long h = 0xcbf29ce484222325L;
+      byte[] b = a.data == null ? new byte[0] : a.data.getBytes(StandardCharsets.UTF_8);
+      for (byte x : b) h = (h ^ (x & 0xff)) * 0x100000001b3L;
+      sum += h;
+    }
+    return sum;
+  }
+
+  private static int minTtl(Discovery.DoHResponse res) {
+    List<Discovery.DoHAnswer> answers = res.answer;
+    int ttl = Integer.MAX_VALUE;
+    for (Discovery.DoHAnswer a : answers) ttl = Math.min(ttl, a.ttl);
+    return ttl;
+  }
+
+  private static boolean same(AidRecord a, AidRecord b) {
+    return Objects.equals(a.uri, b.uri) && Objects.equals(a.proto, b.proto) && Objects.equals(a.auth, b.auth)
+        && Objects.equals(a.desc, b.desc) && Objects.equals(a.docs, b.docs) && Objects.equals(a.dep, b.dep)
+        && Objects.equals(a.pka, b.pka) && Objects.equals(a.kid, b.kid);
+  }
+}
@@ -0,0 +1,201 @@
+package org.agentcommunity.aid;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * DoH JSON transport over a list of endpoints. Each endpoint keeps an EWMA latency and error
+ * score; queries go to the best-scoring endpoint and a hedged copy is sent to the next one when
+ * no answer has arrived by the primary's latency percentile.
+ */
+final class DohClient {
+  private DohClient() {}
+
+  static final String DEFAULT_ENDPOINT = "https://cloudflare-dns.com/dns-query";
+
+  private static final Map<String, EndpointStats> STATS = new ConcurrentHashMap<>();
+
+  static final class EndpointStats {
+    private static final double ALPHA = 0.2;
+    private static final int WINDOW = 64;
+    private static final long DEFAULT_HEDGE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MIN_HEDGE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    final String url;
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+    private double ewmaNanos;
+    private double errorScore;
+
+    EndpointStats(String url) { this.url = url; }
+
+    synchronized void recordSuccess(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % WINDOW;
+      if (count < WINDOW) count++;
+      ewmaNanos = count == 1 ? nanos : ewmaNanos + ALPHA * (nanos - ewmaNanos);
+      errorScore = errorScore * (1 - ALPHA);
+    }
+
+    /**
+     * A request cancelled after {@code nanos} because another endpoint answered first: its latency
+     * is at least that, so it may only raise the estimate.
+     */
+    synchronized void recordCensored(long nanos) {
+      if (count == 0 && ewmaNanos == 0) ewmaNanos = nanos;
+      else if (nanos > ewmaNanos) ewmaNanos = ewmaNanos + ALPHA * (nanos - ewmaNanos);
+    }
+
+    synchronized void recordFailure() {
+      errorScore = errorScore + ALPHA * (1 - errorScore);
+    }
+
+    /** Lower is better; unsampled endpoints score 0 so each gets explored once. */
+    synchronized double score() {
+      return ewmaNanos + errorScore * FAILURE_PENALTY_NANOS;
+    }
+
+    synchronized long hedgeDelayNanos(double percentile) {
+      if (count < 8) return DEFAULT_HEDGE_NANOS;
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      int idx = (int) Math.ceil(percentile * count) - 1;
+      return Math.max(MIN_HEDGE_NANOS, sorted[Math.max(0, Math.min(count - 1, idx))]);
+    }
+
+    synchronized double ewmaMillis() { return ewmaNanos / 1_000_000.0; }
+
+    synchronized double errorScore() { return errorScore; }
+  }
+
+  static EndpointStats stats(String url) {
+    return STATS.computeIfAbsent(url, EndpointStats::new);
+  }
+
+  static List<EndpointStats> rank(List<String> urls) {
+    List<EndpointStats> ranked = new ArrayList<>(urls.size());
+    for (String u : urls) ranked.add(stats(u));
+    // List.sort is stable, so configured order breaks ties
+    ranked.sort(Comparator.comparingDouble(EndpointStats::score));
+    return ranked;
+  }
+
+  /**
+   * Queries TXT records for {@code fqdn} and returns the body of the first 2xx answer. Throws
+   * {@code ERR_DNS_LOOKUP_FAILED} when every endpoint fails or the timeout elapses.
+   */
+  static String queryTxt(HttpClient http, List<String> endpoints, String fqdn, Duration timeout, double hedgePercentile) {
+    return queryTxt(http, endpoints, fqdn, timeout, hedgePercentile, null);
+  }
+
+  /** As above, holding each endpoint to its {@code limits} when those are non-null. */
+  static String queryTxt(HttpClient http, List<String> endpoints, String fqdn, Duration timeout, double hedgePercentile,
+      AdaptiveConcurrency limits) {
+    if (endpoints == null || endpoints.isEmpty()) endpoints = List.of(DEFAULT_ENDPOINT);
+    String encoded = URI.create("http://x/" + fqdn).getRawPath().substring(3);
+    List<EndpointStats> ranked = rank(endpoints);
+
+    CompletableFuture<String> winner = new CompletableFuture<>();
+    List<CompletableFuture<?>> inFlight = new ArrayList<>();
+    AtomicInteger launched = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    AtomicReference<AidError> lastError = new AtomicReference<>();
+
+    Runnable[] launchNext = new Runnable[1];
+    launchNext[0] = () -> {
+      int i = launched.getAndIncrement();
+      if (i >= ranked.size() || winner.isDone()) return;
+      EndpointStats ep = ranked.get(i);
+      URI uri = URI.create(ep.url + "?name=" + encoded + "&type=TXT");
+      AtomicLong start = new AtomicLong(limits == null ? System.nanoTime() : 0); // 0 while still queued
+      CompletableFuture<HttpResponse<String>> f = limits == null
+          ? http.sendAsync(request(uri, timeout), HttpResponse.BodyHandlers.ofString())
+          : limits.limiter(ep.url).call("ERR_DNS_LOOKUP_FAILED", timeout, left -> {
+              start.set(System.nanoTime()); // queueing is not endpoint latency
+              return http.sendAsync(request(uri, left), HttpResponse.BodyHandlers.ofString());
+            }, AdaptiveConcurrency::classify);
+      synchronized (inFlight) { inFlight.add(f); }
+      f.whenComplete((res, err) -> {
+        if (err == null && res.statusCode() / 100 == 2) {
+          ep.recordSuccess(System.nanoTime() - start.get());
+          winner.complete(res.body());
+          return;
+        }
+        if (f.isCancelled()) {
+          // Lost to a faster endpoint; without this a slow primary would never drop in the ranking
+          long sent = start.get();
+          if (sent != 0) ep.recordCensored(System.nanoTime() - sent);
+          return;
+        }
+        ep.recordFailure();
+        lastError.set(err == null
+            ? AidError.expected("ERR_DNS_LOOKUP_FAILED", "DoH HTTP " + res.statusCode())
+            : rootCause(err) instanceof AidError ? (AidError) rootCause(err)
+            : AidError.expected("ERR_DNS_LOOKUP_FAILED", rootMessage(err)));
+        if (failed.incrementAndGet() >= ranked.size()) {
+          winner.completeExceptionally(lastError.get());
+        } else {
+          // Don't wait for the hedge deadline once the current endpoint has failed outright
+          launchNext[0].run();
+        }
+      });
+      if (i + 1 < ranked.size()) {
+        long delay = ep.hedgeDelayNanos(hedgePercentile);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+          if (!winner.isDone() && launched.get() == i + 1) launchNext[0].run();
+        });
+      }
+    };
+    launchNext[0].run();
+
+    try {
+      return winner.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      Throwable c = e.getCause();
+      if (c instanceof AidError) throw (AidError) c;
+      throw new AidError("ERR_DNS_LOOKUP_FAILED", rootMessage(c));
+    } catch (TimeoutException e) {
+      AidError last = lastError.get();
+      throw last != null ? last : AidError.expected("ERR_DNS_LOOKUP_FAILED", "DoH query timed out for " + fqdn);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AidError("ERR_DNS_LOOKUP_FAILED", "Interrupted");
+    } finally {
+      synchronized (inFlight) {
+        for (CompletableFuture<?> f : inFlight) f.cancel(true);
+      }
+    }
+  }
+
+  private static HttpRequest request(URI uri, Duration timeout) {
+    return HttpRequest.newBuilder(uri).timeout(timeout).header("Accept", "application/dns-json").GET().build();
+  }
+
+  private static Throwable rootCause(Throwable t) {
+    while (t.getCause() != null && t.getCause() != t) t = t.getCause();
+    return t;
+  }
+
+  private static String rootMessage(Throwable t) {
+    t = rootCause(t);
+    return t.getMessage() != null ? t.getMessage() : t.toString();
+  }
+}
@@ -13,6 +13,9 @@ import java.security.Signature;
 import java.security.spec.X509EncodedKeySpec;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.security.SecureRandom;
@@ -39,7 +42,7 @@ public final class Handshake {
     return Base58.decode(s.substring(1));
   }
 
-  private static class SigData {
+  static final class SigData {
     String[] covered;
     long created;
     String keyidRaw;
@@ -50,13 +53,23 @@ public final class Handshake {
   }
 
   private static SigData parseSignatureHeaders(HttpResponse<byte[]> res) {
-    String sigInput = getHeader(res, "Signature-Input");
-    String sig = getHeader(res, "Signature");
+    return parseSignatureHeaders(getHeader(res, "Signature-Input"), getHeader(res, "Signature"), getHeader(res, "Date"));
+  }
+
+  private static final Pattern SIG_INPUT_ITEMS = Pattern.compile("sig=\\(\\s*([^)]*?)\\s*\\)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern QUOTED = Pattern.compile("\"([^\"]+)\"");
+  private static final Pattern CREATED = Pattern.compile("(?:^|;)\\s*created=(\\d+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern KEYID = Pattern.compile("(?:^|;)\\s*keyid=([^;\\s]+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern ALG = Pattern.compile("(?:^|;)\\s*alg=\"([^\"]+)\"", Pattern.CASE_INSENSITIVE);
+  private static final Pattern SIGNATURE = Pattern.compile("sig\\s*=\\s*:\\s*([^:]+)\\s*:", Pattern.CASE_INSENSITIVE);
+  private static final Pattern QUOTED_KEYID = Pattern.compile("^\"(.+)\"$");
+
+  static SigData parseSignatureHeaders(String sigInput, String sig, String responseDate) {
     if (sigInput == null || sig == null) throw new AidError("ERR_SECURITY", "Missing signature headers");
-    Matcher inside = Pattern.compile("sig=\\(\\s*([^)]*?)\\s*\\)", Pattern.CASE_INSENSITIVE).matcher(sigInput);
+    Matcher inside = SIG_INPUT_ITEMS.matcher(sigInput);
     if (!inside.find()) throw new AidError("ERR_SECURITY", "Invalid Signature-Input");
     List<String> items = new ArrayList<>();
-    Matcher m = Pattern.compile("\"([^\"]+)\"").matcher(inside.group(1));
+    Matcher m = QUOTED.matcher(inside.group(1));
     while (m.find()) items.add(m.group(1));
     if (items.isEmpty()) throw new AidError("ERR_SECURITY", "Invalid Signature-Input");
 
@@ -83,9 +96,9 @@ public final class Handshake {
         throw new AidError("ERR_SECURITY", "Signature-Input must cover required fields");
     }
 
-    Matcher mc = Pattern.compile("(?:^|;)\\s*created=(\\d+)", Pattern.CASE_INSENSITIVE).matcher(sigInput);
-    Matcher mk = Pattern.compile("(?:^|;)\\s*keyid=([^;\\s]+)", Pattern.CASE_INSENSITIVE).matcher(sigInput);
-    Matcher ma = Pattern.compile("(?:^|;)\\s*alg=\"([^\"]+)\"", Pattern.CASE_INSENSITIVE).matcher(sigInput);
+    Matcher mc = CREATED.matcher(sigInput);
+    Matcher mk = KEYID.matcher(sigInput);
+    Matcher ma = ALG.matcher(sigInput);
     if (!mc.find() || !mk.find() || !ma.find()) throw new AidError("ERR_SECURITY", "Invalid Signature-Input");
     long created;
     try {
@@ -94,13 +107,12 @@ public final class Handshake {
       throw new AidError("ERR_SECURITY", "Invalid created timestamp");
     }
     String keyidRaw = mk.group(1);
-    String keyid = keyidRaw.replaceAll("^\"(.+)\"$", "$1");
+    String keyid = QUOTED_KEYID.matcher(keyidRaw).replaceAll("$1");
     String alg = asciiToLower(ma.group(1));
 
-    Matcher ms = Pattern.compile("sig\\s*=\\s*:\\s*([^:]+)\\s*:", Pattern.CASE_INSENSITIVE).matcher(sig);
+    Matcher ms = SIGNATURE.matcher(sig);
     if (!ms.find()) throw new AidError("ERR_SECURITY", "Invalid Signature header");
     byte[] signature = Base64.getDecoder().decode(ms.group(1));
-    String responseDate = getHeader(res, "Date");
 
     SigData d = new SigData();
     d.covered = items.toArray(new String[0]);
@@ -176,19 +188,106 @@ public final class Handshake {
   }
 
   public static void performHandshake(String uri, String pka, String kid, Duration timeout) {
+    performHandshake(uri, pka, kid, timeout, Http.SHARED);
+  }
+
+  static void performHandshake(String uri, String pka, String kid, Duration timeout, HttpClient http) {
+    Challenge c = challenge(uri, kid, timeout);
+    HttpResponse<byte[]> res;
+    try { res = http.send(c.request, HttpResponse.BodyHandlers.ofByteArray()); }
+    catch (Exception e) { throw new AidError("ERR_SECURITY", e.getMessage()); }
+    verify(res, uri, pka, kid, c);
+  }
+
+  /** As above, holding the agent's {@code host:port} to its {@code limits} when those are non-null. */
+  static void performHandshake(String uri, String pka, String kid, Duration timeout, HttpClient http, AdaptiveConcurrency limits) {
+    if (limits == null) {
+      performHandshake(uri, pka, kid, timeout, http);
+      return;
+    }
+    try {
+      performHandshakeAsync(uri, pka, kid, timeout, http, limits).get();
+    } catch (ExecutionException e) {
+      Throwable c = e.getCause();
+      if (c instanceof AidError) throw (AidError) c;
+      throw new AidError("ERR_SECURITY", String.valueOf(c.getMessage()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AidError("ERR_SECURITY", "Interrupted");
+    }
+  }
+
+  /**
+   * Non-blocking {@link #performHandshake}; fails with the same {@link AidError}s. Cancelling the
+   * returned future aborts the HTTP exchange.
+   */
+  static CompletableFuture<Void> performHandshakeAsync(String uri, String pka, String kid, Duration timeout, HttpClient http) {
+    return performHandshakeAsync(uri, pka, kid, timeout, http, null);
+  }
+
+  /** As above, holding the agent's {@code host:port} to its {@code limits} when those are non-null. */
+  static CompletableFuture<Void> performHandshakeAsync(String uri, String pka, String kid, Duration timeout, HttpClient http,
+      AdaptiveConcurrency limits) {
+    Challenge c;
+    try {
+      c = challenge(uri, kid, timeout);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    CompletableFuture<HttpResponse<byte[]>> exchange = limits == null
+        ? http.sendAsync(c.request, HttpResponse.BodyHandlers.ofByteArray())
+        : limits.limiter(c.request.uri().getAuthority()).call("ERR_SECURITY", timeout,
+            left -> http.sendAsync(HttpRequest.newBuilder(c.request, (name, value) -> true).timeout(left).build(),
+                HttpResponse.BodyHandlers.ofByteArray()), AdaptiveConcurrency::classify);
+    CompletableFuture<Void> result = exchange.handle((res, err) -> {
+      if (err != null) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (cause instanceof AidError) throw (AidError) cause;
+        throw new AidError("ERR_SECURITY", cause.getMessage());
+      }
+      verify(res, uri, pka, kid, c);
+      return null;
+    });
+    result.whenComplete((v, err) -> {
+      if (result.isCancelled()) exchange.cancel(true);
+    });
+    return result;
+  }
+
+  private static final class Challenge {
+    final String value;
+    final String date;
+    final HttpRequest request;
+    Challenge(String value, String date, HttpRequest request) { this.value = value; this.date = date; this.request = request; }
+  }
+
+  private static Challenge challenge(String uri, String kid, Duration timeout) {
     if (kid == null || kid.isEmpty()) throw new AidError("ERR_SECURITY", "Missing kid for PKA");
-    URI u = URI.create(uri);
-    HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).connectTimeout(timeout).build();
     byte[] nonce = new byte[32]; SECURE_RANDOM.nextBytes(nonce);
     String challenge = Base64.getUrlEncoder().withoutPadding().encodeToString(nonce);
     String date = java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME.format(java.time.ZonedDateTime.now(java.time.ZoneOffset.UTC));
-    HttpRequest req = HttpRequest.newBuilder(URI.create(uri)).timeout(timeout).header("AID-Challenge", challenge).header("Date", date).GET().build();
-    HttpResponse<byte[]> res;
-    try { res = http.send(req, HttpResponse.BodyHandlers.ofByteArray()); }
-    catch (Exception e) { throw new AidError("ERR_SECURITY", e.getMessage()); }
+    HttpRequest req;
+    try {
+      URI target = URI.create(uri);
+      String scheme = target.getScheme() == null ? "" : asciiToLower(target.getScheme());
+      if (!scheme.equals("https") && !scheme.equals("http")) {
+        throw new AidError("ERR_SECURITY", "PKA handshake needs an http(s) URI, got " + uri);
+      }
+      req = HttpRequest.newBuilder(target).timeout(timeout).header("AID-Challenge", challenge).header("Date", date).GET().build();
+    } catch (IllegalArgumentException e) {
+      throw new AidError("ERR_SECURITY", "Invalid PKA handshake URI " + uri + ": " + e.getMessage());
+    }
+    return new Challenge(challenge, date, req);
+  }
+
+  private static void verify(HttpResponse<byte[]> res, String uri, String pka, String kid, Challenge c) {
     if (res.statusCode() / 100 != 2) throw new AidError("ERR_SECURITY", "Handshake HTTP " + res.statusCode());
 
-    SigData sd = parseSignatureHeaders(res);
+    verifySignature(parseSignatureHeaders(res), uri, c.request.uri().getAuthority(), pka, kid, c.value, c.date);
+  }
+
+  /** Checks a parsed response signature against the request it answers; throws {@code ERR_SECURITY}. */
+  static void verifySignature(SigData sd, String uri, String host, String pka, String kid, String challenge, String requestDate) {
     long now = System.currentTimeMillis() / 1000L;
     if (Math.abs(now - sd.created) > 300) throw new AidError("ERR_SECURITY", "Signature created timestamp outside acceptance window");
     String respDate = sd.responseDate;
@@ -207,8 +306,7 @@ public final class Handshake {
       throw new AidError("ERR_SECURITY", "Unsupported signature algorithm");
     }
 
-    String host = u.getAuthority();
-    byte[] base = buildSignatureBase(sd.covered, sd.created, sd.keyidRaw, sd.alg, "GET", uri, host, (respDate != null ? respDate : date), challenge);
+    byte[] base = buildSignatureBase(sd.covered, sd.created, sd.keyidRaw, sd.alg, "GET", uri, host, (respDate != null ? respDate : requestDate), challenge);
     byte[] pub = multibaseDecode(pka);
     if (pub.length != 32) throw new AidError("ERR_SECURITY", "Invalid PKA length");
     PublicKey pk = publicKeyFromRawEd25519(pub);
@@ -0,0 +1,20 @@
+package org.agentcommunity.aid;
+
+import java.net.http.HttpClient;
+
+/** HTTP client shared by DoH queries, handshakes and the well-known fallback, so connections are pooled. */
+final class Http {
+  private Http() {}
+
+  static final HttpClient SHARED = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+
+  /** Rejects a client that follows redirects: discovery must never follow one silently. */
+  static HttpClient orShared(HttpClient http) {
+    if (http == null) return SHARED;
+    if (http.followRedirects() != HttpClient.Redirect.NEVER) {
+      throw new IllegalArgumentException("DiscoveryOptions.httpClient must use HttpClient.Redirect.NEVER, not "
+          + http.followRedirects());
+    }
+    return http;
+  }
+}
@@ -0,0 +1,95 @@
+package org.agentcommunity.aid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-heap {@link DiscoveryCache} holding up to {@code maxEntries} results until their TTL runs out.
+ * When full, the least recently used entry makes room; expired entries are swept in batches.
+ */
+public final class InMemoryDiscoveryCache implements DiscoveryCache {
+  private static final int MIN_SWEEP_INTERVAL = 64;
+
+  private static final class Entry {
+    final Discovery.DiscoveryResult result;
+    final long expiresAtNanos;
+    Entry(Discovery.DiscoveryResult result, long expiresAtNanos) { this.result = result; this.expiresAtNanos = expiresAtNanos; }
+  }
+
+  private final int maxEntries;
+  private final LinkedHashMap<String, Entry> entries;
+  private int putsSinceSweep;
+
+  public InMemoryDiscoveryCache() {
+    this(10_000);
+  }
+
+  public InMemoryDiscoveryCache(int maxEntries) {
+    if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be >= 1");
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > InMemoryDiscoveryCache.this.maxEntries;
+      }
+    };
+  }
+
+  static String key(String domain, String protocol) {
+    return protocol == null || protocol.isEmpty() ? domain : domain + "|" + protocol;
+  }
+
+  @Override
+  public Discovery.DiscoveryResult get(String domain, String protocol) {
+    String key = key(domain, protocol);
+    synchronized (entries) {
+      Entry e = entries.get(key);
+      if (e == null) return null;
+      long left = e.expiresAtNanos - System.nanoTime();
+      if (left <= 0) {
+        entries.remove(key);
+        return null;
+      }
+      return e.result.expiringIn(left);
+    }
+  }
+
+  @Override
+  public void put(String domain, String protocol, Discovery.DiscoveryResult result) {
+    if (result.ttl <= 0) return;
+    long now = System.nanoTime();
+    Entry e = new Entry(result, now + TimeUnit.SECONDS.toNanos(result.ttl));
+    String key = key(domain, protocol);
+    synchronized (entries) {
+      entries.put(key, e);
+      // A full pass every size/4 puts keeps the sweep O(1) per put, amortized
+      if (++putsSinceSweep >= Math.max(MIN_SWEEP_INTERVAL, entries.size() / 4)) {
+        putsSinceSweep = 0;
+        sweep(now);
+      }
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      putsSinceSweep = 0;
+    }
+  }
+
+  private void sweep(long now) {
+    for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+      if (it.next().expiresAtNanos - now <= 0) it.remove();
+    }
+  }
+}
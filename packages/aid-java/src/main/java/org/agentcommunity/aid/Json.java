@@ -0,0 +1,262 @@
+package org.agentcommunity.aid;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal strict JSON (RFC 8259) reader for the DoH response and the well-known document, without
+ * reflection or dependencies. Scalars are coerced the way Jackson's default databinding coerces
+ * them into the library's former {@code int}/{@code boolean}/{@code String} targets. Like Jackson,
+ * content after the first complete value is ignored.
+ */
+final class Json {
+  private Json() {}
+
+  private static final BigDecimal INT_MIN = BigDecimal.valueOf(Integer.MIN_VALUE);
+  private static final BigDecimal INT_MAX = BigDecimal.valueOf(Integer.MAX_VALUE);
+
+  /** Unparsed number token; kept as text so string targets see the literal as written. */
+  static final class Num {
+    final String text;
+    Num(String text) { this.text = text; }
+  }
+
+  static final class JsonException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    JsonException(String message) { super(message, null, false, false); }
+  }
+
+  /** Objects become {@link LinkedHashMap}s (last duplicate wins), arrays {@link ArrayList}s. */
+  static Object parse(String text) throws JsonException {
+    Reader r = new Reader(text);
+    r.skipWhitespace();
+    if (r.pos < text.length() && text.charAt(r.pos) == '\uFEFF') r.pos++;
+    r.skipWhitespace();
+    if (r.pos >= text.length()) throw new JsonException("No content to parse");
+    return r.value(0);
+  }
+
+  /** A flat object of scalars, e.g. the well-known document. */
+  static Map<String, String> parseStringMap(String text) throws JsonException {
+    Object root = parse(text);
+    if (!(root instanceof Map)) throw new JsonException("Expected a JSON object");
+    Map<String, String> out = new HashMap<>();
+    for (Map.Entry<String, Object> e : asObject(root).entrySet()) out.put(e.getKey(), asString(e.getValue(), e.getKey()));
+    return out;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> asObject(Object v) {
+    return (Map<String, Object>) v;
+  }
+
+  static String asString(Object v, String field) throws JsonException {
+    if (v == null || v instanceof String) return (String) v;
+    if (v instanceof Num) return ((Num) v).text;
+    if (v instanceof Boolean) return v.toString();
+    throw new JsonException("Cannot read a JSON " + (v instanceof Map ? "object" : "array") + " as String for \"" + field + "\"");
+  }
+
+  static int asInt(Object v, String field) throws JsonException {
+    if (v == null) return 0;
+    String text;
+    if (v instanceof Num) {
+      text = ((Num) v).text;
+    } else if (v instanceof String) {
+      text = ((String) v).trim();
+      if (text.isEmpty()) return 0;
+    } else {
+      throw new JsonException("Cannot read " + kind(v) + " as int for \"" + field + "\"");
+    }
+    BigDecimal d;
+    try {
+      d = new BigDecimal(text);
+    } catch (NumberFormatException e) {
+      throw new JsonException("Cannot read \"" + text + "\" as int for \"" + field + "\"");
+    }
+    if (d.compareTo(INT_MIN) < 0 || d.compareTo(INT_MAX) > 0) {
+      throw new JsonException("Numeric value (" + text + ") out of range of int for \"" + field + "\"");
+    }
+    return d.intValue(); // fractions truncate, as with Jackson's ACCEPT_FLOAT_AS_INT
+  }
+
+  static boolean asBoolean(Object v, String field) throws JsonException {
+    if (v == null) return false;
+    if (v instanceof Boolean) return (Boolean) v;
+    if (v instanceof Num && ((Num) v).text.matches("-?\\d+")) return !((Num) v).text.matches("-?0+");
+    if (v instanceof String) {
+      String s = ((String) v).trim();
+      if (s.isEmpty() || s.equalsIgnoreCase("false")) return false;
+      if (s.equalsIgnoreCase("true")) return true;
+    }
+    throw new JsonException("Cannot read " + kind(v) + " as boolean for \"" + field + "\"");
+  }
+
+  private static String kind(Object v) {
+    if (v instanceof Map) return "a JSON object";
+    if (v instanceof List) return "a JSON array";
+    if (v instanceof Boolean) return "a JSON boolean";
+    if (v instanceof Num) return "number " + ((Num) v).text;
+    return "string \"" + v + "\"";
+  }
+
+  private static final class Reader {
+    private static final int MAX_DEPTH = 1000;
+    private final String s;
+    int pos;
+
+    Reader(String s) { this.s = s; }
+
+    Object value(int depth) throws JsonException {
+      if (depth > MAX_DEPTH) throw error("Nesting too deep");
+      skipWhitespace();
+      if (pos >= s.length()) throw error("Unexpected end of input");
+      char c = s.charAt(pos);
+      switch (c) {
+        case '{': return object(depth);
+        case '[': return array(depth);
+        case '"': return string();
+        case 't': return literal("true", Boolean.TRUE);
+        case 'f': return literal("false", Boolean.FALSE);
+        case 'n': return literal("null", null);
+        default:
+          if (c == '-' || (c >= '0' && c <= '9')) return number();
+          throw error("Unexpected character '" + c + "'");
+      }
+    }
+
+    private Map<String, Object> object(int depth) throws JsonException {
+      Map<String, Object> out = new LinkedHashMap<>();
+      pos++;
+      skipWhitespace();
+      if (peek() == '}') { pos++; return out; }
+      while (true) {
+        skipWhitespace();
+        if (peek() != '"') throw error("Expected a field name");
+        String key = string();
+        skipWhitespace();
+        if (peek() != ':') throw error("Expected ':'");
+        pos++;
+        out.put(key, value(depth + 1));
+        skipWhitespace();
+        char c = peek();
+        pos++;
+        if (c == '}') return out;
+        if (c != ',') throw error("Expected ',' or '}'");
+      }
+    }
+
+    private List<Object> array(int depth) throws JsonException {
+      List<Object> out = new ArrayList<>();
+      pos++;
+      skipWhitespace();
+      if (peek() == ']') { pos++; return out; }
+      while (true) {
+        out.add(value(depth + 1));
+        skipWhitespace();
+        char c = peek();
+        pos++;
+        if (c == ']') return out;
+        if (c != ',') throw error("Expected ',' or ']'");
+      }
+    }
+
+    private String string() throws JsonException {
+      pos++;
+      StringBuilder sb = null;
+      int runStart = pos;
+      while (true) {
+        if (pos >= s.length()) throw error("Unterminated string");
+        char c = s.charAt(pos);
+        if (c == '"') {
+          String run = s.substring(runStart, pos++);
+          return sb == null ? run : sb.append(run).toString();
+        }
+        if (c < 0x20) throw error("Unescaped control character in string");
+        if (c != '\\') { pos++; continue; }
+        if (sb == null) sb = new StringBuilder();
+        sb.append(s, runStart, pos);
+        if (++pos >= s.length()) throw error("Unterminated string");
+        char e = s.charAt(pos++);
+        switch (e) {
+          case '"': case '\\': case '/': sb.append(e); break;
+          case 'b': sb.append('\b'); break;
+          case 'f': sb.append('\f'); break;
+          case 'n': sb.append('\n'); break;
+          case 'r': sb.append('\r'); break;
+          case 't': sb.append('\t'); break;
+          case 'u':
+            if (pos + 4 > s.length()) throw error("Truncated \\u escape");
+            int cp = 0;
+            for (int i = 0; i < 4; i++) {
+              int d = Character.digit(s.charAt(pos + i), 16);
+              if (d < 0) throw error("Invalid \\u escape");
+              cp = cp * 16 + d;
+            }
+            pos += 4;
+            sb.append((char) cp);
+            break;
+          default:
+            throw error("Invalid escape '\\" + e + "'");
+        }
+        runStart = pos;
+      }
+    }
+
+    private Num number() throws JsonException {
+      int start = pos;
+      if (peek() == '-') pos++;
+      if (peek() == '0') {
+        pos++;
+        if (isDigit(peek())) throw error("Leading zeroes not allowed");
+      } else if (isDigit(peek())) {
+        while (isDigit(peek())) pos++;
+      } else {
+        throw error("Invalid number");
+      }
+      if (peek() == '.') {
+        pos++;
+        if (!isDigit(peek())) throw error("Invalid number");
+        while (isDigit(peek())) pos++;
+      }
+      if (peek() == 'e' || peek() == 'E') {
+        pos++;
+        if (peek() == '+' || peek() == '-') pos++;
+        if (!isDigit(peek())) throw error("Invalid number");
+        while (isDigit(peek())) pos++;
+      }
+      return new Num(s.substring(start, pos));
+    }
+
+    private Object literal(String word, Object value) throws JsonException {
+      if (!s.startsWith(word, pos)) throw error("Invalid literal");
+      pos += word.length();
+      return value;
+    }
+
+    private char peek() {
+      return pos < s.length() ? s.charAt(pos) : '\0';
+    }
+
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+    }
+
+    void skipWhitespace() {
+      while (pos < s.length()) {
+        char c = s.charAt(pos);
+        if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+        pos++;
+      }
+    }
+
+    private JsonException error(String message) {
+      return new JsonException(message + " at offset " + pos);
+    }
+  }
+}
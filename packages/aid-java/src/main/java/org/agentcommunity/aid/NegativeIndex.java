@@ -0,0 +1,242 @@
+package org.agentcommunity.aid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Compact set of domains known to have no AID record, for {@link
+ * Discovery.DiscoveryOptions#negativeIndex}.
+ *
+ * <p>A ring of Bloom filters, each covering {@code ttl / buckets} of wall-clock time: domains are
+ * added to the current filter and looked up in the last {@code buckets + 1}, so an entry is answered
+ * for at least {@code ttl} and at most one slice longer, then dropped with its filter. Sized for
+ * {@code expectedPerTtl} insertions per {@code ttl}, a lookup of a domain that was never added
+ * answers true with probability about {@code falsePositiveRate}; a domain that was added always
+ * answers true until it expires. At 1% that is about 16 bits per domain.
+ *
+ * <p>Discovery keeps separate entries per lookup mode (well-known fallback on or off, DNSSEC
+ * required or not), so a lookup only trusts absence established under the same checks; {@link
+ * #add(String)} and {@link #mightContain(String)} use the default mode.
+ *
+ * <p>Thread-safe. {@link #save} and {@link #load} keep the index across restarts; timestamps are
+ * wall-clock, so entries keep expiring on schedule after a reload.
+ */
+public final class NegativeIndex {
+  private static final int MAGIC = 0x4149444e; // "AIDN"
+  private static final int VERSION = 1;
+
+  private final long sliceMillis;
+  private final int buckets;
+  private final int hashes;
+  private final long bits;
+  private final AtomicReferenceArray<Filter> filters;
+  private final LongSupplier clock;
+
+  /** One slice's Bloom filter; replaced, never cleared, when its slot is reused. */
+  private static final class Filter {
+    final long epoch; // slice number
+    final AtomicLongArray words;
+    Filter(long epoch, AtomicLongArray words) { this.epoch = epoch; this.words = words; }
+  }
+
+  /** Expires entries after {@link Constants#DNS_TTL_MIN} seconds, in 4 slices. */
+  public NegativeIndex(long expectedPerTtl, double falsePositiveRate) {
+    this(expectedPerTtl, falsePositiveRate, Duration.ofSeconds(Constants.DNS_TTL_MIN), 4);
+  }
+
+  public NegativeIndex(long expectedPerTtl, double falsePositiveRate, Duration ttl, int buckets) {
+    this(expectedPerTtl, falsePositiveRate, ttl, buckets, System::currentTimeMillis);
+  }
+
+  NegativeIndex(long expectedPerTtl, double falsePositiveRate, Duration ttl, int buckets, LongSupplier clock) {
+    if (expectedPerTtl < 1) throw new IllegalArgumentException("expectedPerTtl must be >= 1");
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+    if (buckets < 1) throw new IllegalArgumentException("buckets must be >= 1");
+    if (ttl.toMillis() < buckets) throw new IllegalArgumentException("ttl too short for " + buckets + " buckets");
+    // Each lookup probes buckets + 1 filters, each holding about a bucket's share of the insertions
+    double perFilter = falsePositiveRate / (buckets + 1);
+    double n = Math.ceil((double) expectedPerTtl / buckets);
+    long m = (long) Math.ceil(-n * Math.log(perFilter) / (Math.log(2) * Math.log(2)));
+    long words = Math.max(1, (m + 63) / 64);
+    if (words > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("index too large");
+    this.sliceMillis = ttl.toMillis() / buckets;
+    this.buckets = buckets;
+    this.bits = words * 64;
+    this.hashes = Math.max(1, (int) Math.round(bits / n * Math.log(2)));
+    this.clock = clock;
+    this.filters = new AtomicReferenceArray<>(buckets + 1);
+  }
+
+  private NegativeIndex(long sliceMillis, int buckets, int hashes, long bits, LongSupplier clock) {
+    this.sliceMillis = sliceMillis;
+    this.buckets = buckets;
+    this.hashes = hashes;
+    this.bits = bits;
+    this.clock = clock;
+    this.filters = new AtomicReferenceArray<>(buckets + 1);
+  }
+
+  public void add(String domain) {
+    add(domain, null);
+  }
+
+  public void add(String domain, String protocol) {
+    add(domain, protocol, 0);
+  }
+
+  /** {@code mode} 0 is the default lookup mode; see {@link Discovery.DiscoveryOptions#negativeIndex}. */
+  void add(String domain, String protocol, int mode) {
+    long h1 = hash(domain, protocol, mode);
+    long h2 = mix(h1) | 1;
+    AtomicLongArray f = current().words;
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bits);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long w;
+      while (((w = f.get(word)) & mask) == 0 && !f.compareAndSet(word, w, w | mask)) {
+        // retry on contention
+      }
+    }
+  }
+
+  public boolean mightContain(String domain) {
+    return mightContain(domain, null);
+  }
+
+  /** False means the domain was not added within the TTL; true may be a false positive. */
+  public boolean mightContain(String domain, String protocol) {
+    return mightContain(domain, protocol, 0);
+  }
+
+  boolean mightContain(String domain, String protocol, int mode) {
+    long h1 = hash(domain, protocol, mode);
+    long h2 = mix(h1) | 1;
+    long now = epoch();
+    for (long e = now - buckets; e <= now; e++) {
+      Filter f = filters.get(slot(e));
+      if (f != null && f.epoch == e && contains(f.words, h1, h2)) return true;
+    }
+    return false;
+  }
+
+  private boolean contains(AtomicLongArray f, long h1, long h2) {
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bits);
+      if ((f.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+    }
+    return true;
+  }
+
+  private long epoch() {
+    return Math.floorDiv(clock.getAsLong(), sliceMillis);
+  }
+
+  private int slot(long epoch) {
+    return (int) Math.floorMod(epoch, (long) filters.length());
+  }
+
+  // The filter for the current slice, replacing the expired one in its slot
+  private Filter current() {
+    long e = epoch();
+    int slot = slot(e);
+    while (true) {
+      Filter f = filters.get(slot);
+      if (f != null && f.epoch == e) return f;
+      Filter fresh = new Filter(e, new AtomicLongArray((int) (bits / 64)));
+      if (filters.compareAndSet(slot, f, fresh)) return fresh;
+    }
+  }
+
+  /** Domains are matched case-insensitively, as in DNS. */
+  private static long hash(String domain, String protocol, int mode) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < domain.length(); i++) {
+      char c = domain.charAt(i);
+      if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+      h = (h ^ c) * 0x100000001b3L;
+    }
+    if (protocol != null && !protocol.isEmpty()) {
+      h = (h ^ '|') * 0x100000001b3L;
+      for (int i = 0; i < protocol.length(); i++) h = (h ^ protocol.charAt(i)) * 0x100000001b3L;
+    }
+    if (mode != 0) h = (h ^ ('#' + mode)) * 0x100000001b3L;
+    return mix(h);
+  }
+
+  // splitmix64 finalizer
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /** Size of the filters in bytes. */
+  public long sizeInBytes() {
+    return (long) filters.length() * (bits / 8);
+  }
+
+  /** Writes the index to {@code file}, replacing it atomically where the file system allows. */
+  public void save(Path file) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(sliceMillis);
+      out.writeInt(buckets);
+      out.writeInt(hashes);
+      out.writeLong(bits);
+      for (int i = 0; i < filters.length(); i++) {
+        Filter f = filters.get(i);
+        out.writeBoolean(f != null);
+        if (f == null) continue;
+        out.writeLong(f.epoch);
+        for (int w = 0; w < f.words.length(); w++) out.writeLong(f.words.get(w));
+      }
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Reads an index written by {@link #save}; entries that expired meanwhile are not answered. */
+  public static NegativeIndex load(Path file) throws IOException {
+    return load(file, System::currentTimeMillis);
+  }
+
+  static NegativeIndex load(Path file, LongSupplier clock) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      if (in.readInt() != MAGIC) throw new IOException("Not a negative index file: " + file);
+      int version = in.readInt();
+      if (version != VERSION) throw new IOException("Unsupported negative index version " + version);
+      long sliceMillis = in.readLong();
+      int buckets = in.readInt();
+      int hashes = in.readInt();
+      long bits = in.readLong();
+      if (sliceMillis < 1 || buckets < 1 || hashes < 1 || bits < 64 || bits % 64 != 0 || bits / 64 > Integer.MAX_VALUE - 8) {
+        throw new IOException("Corrupt negative index header: " + file);
+      }
+      NegativeIndex idx = new NegativeIndex(sliceMillis, buckets, hashes, bits, clock);
+      for (int i = 0; i < idx.filters.length(); i++) {
+        if (!in.readBoolean()) continue;
+        long epoch = in.readLong();
+        AtomicLongArray words = new AtomicLongArray((int) (bits / 64));
+        for (int w = 0; w < words.length(); w++) words.set(w, in.readLong());
+        idx.filters.set(i, new Filter(epoch, words));
+      }
+      return idx;
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package org.agentcommunity.aid;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DiscoveryCache} that keeps results serialized ({@link RecordCodec}) in direct memory, so a
+ * large cache costs the garbage collector two buffers instead of several objects per domain. Only
+ * results returned by {@link #get} are materialized on the heap.
+ *
+ * <p>Entries are appended to a ring of {@code capacityBytes}; when the ring or the {@code
+ * maxEntries} index fills up, the oldest entries are evicted first. Lookups go through an
+ * open-addressing index keyed by a 64-bit hash of domain and protocol, and expired entries are
+ * dropped on access. The direct memory is released when the cache becomes unreachable.
+ */
+public final class OffHeapDiscoveryCache implements DiscoveryCache {
+  // Entry: i32 total length, i64 key hash, i64 expiry (System.nanoTime), u16 key length, key, value
+  private static final int HEADER = 4 + 8 + 8 + 2;
+  // Index slot: i64 key hash, i32 entry offset + 1 (0 = empty)
+  private static final int SLOT = 12;
+
+  private final ByteBuffer data;
+  private final ByteBuffer index;
+  private final int capacity;
+  private final int mask;
+  private final int maxEntries;
+
+  // Ring state: live bytes run from head to tail, or head to wrapEnd then 0 to tail when wrapped
+  private int head;
+  private int tail;
+  private int wrapEnd;
+  private boolean wrapped;
+  private int ringEntries; // entries in the ring, including ones no longer indexed
+  private int size;        // indexed entries
+
+  public OffHeapDiscoveryCache(int capacityBytes, int maxEntries) {
+    if (capacityBytes < 1024) throw new IllegalArgumentException("capacityBytes must be >= 1024");
+    if (maxEntries < 1 || maxEntries > (1 << 26)) throw new IllegalArgumentException("maxEntries out of range");
+    this.capacity = capacityBytes;
+    this.maxEntries = maxEntries;
+    int slots = Integer.highestOneBit(maxEntries * 2 - 1) << 1;
+    this.mask = slots - 1;
+    this.data = ByteBuffer.allocateDirect(capacityBytes);
+    this.index = ByteBuffer.allocateDirect(slots * SLOT);
+  }
+
+  @Override
+  public Discovery.DiscoveryResult get(String domain, String protocol) {
+    byte[] key = key(domain, protocol);
+    long hash = hash(key);
+    byte[] value;
+    long left;
+    synchronized (this) {
+      int slot = find(hash, key);
+      if (slot < 0) return null;
+      int off = offset(slot);
+      left = data.getLong(off + 12) - System.nanoTime();
+      if (left <= 0) {
+        removeSlot(slot);
+        return null;
+      }
+      int keyLen = data.getShort(off + 20) & 0xFFFF;
+      int valueOff = off + HEADER + keyLen;
+      value = new byte[data.getInt(off) - HEADER - keyLen];
+      data.get(valueOff, value);
+    }
+    return RecordCodec.decode(ByteBuffer.wrap(value)).expiringIn(left);
+  }
+
+  @Override
+  public void put(String domain, String protocol, Discovery.DiscoveryResult result) {
+    if (result.ttl <= 0) return;
+    byte[] key = key(domain, protocol);
+    byte[] value = RecordCodec.encode(result);
+    long hash = hash(key);
+    long expires = System.nanoTime() + TimeUnit.SECONDS.toNanos(result.ttl);
+    int len = HEADER + key.length + value.length;
+    if (key.length > 0xFFFF || len > capacity) return;
+    synchronized (this) {
+      int existing = find(hash, key);
+      if (existing >= 0) removeSlot(existing);
+      while (size >= maxEntries) evictHead();
+      int off = reserve(len);
+      data.putInt(off, len).putLong(off + 4, hash).putLong(off + 12, expires).putShort(off + 20, (short) key.length);
+      data.put(off + HEADER, key);
+      data.put(off + HEADER + key.length, value);
+      ringEntries++;
+      insertSlot(hash, off);
+    }
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public int capacityBytes() {
+    return capacity;
+  }
+
+  private static byte[] key(String domain, String protocol) {
+    return InMemoryDiscoveryCache.key(domain, protocol).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // 64-bit FNV-1a
+  static long hash(byte[] key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key) {
+      h ^= b & 0xFF;
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  // --- ring ---
+
+  /** Offset of {@code len} free bytes, evicting the oldest entries as needed. */
+  private int reserve(int len) {
+    while (true) {
+      if (ringEntries == 0) {
+        head = tail = 0;
+        wrapped = false;
+      }
+      if (!wrapped) {
+        if (capacity - tail >= len) return advance(len);
+        wrapEnd = tail;
+        tail = 0;
+        wrapped = true;
+      }
+      if (head - tail >= len) return advance(len);
+      evictHead();
+    }
+  }
+
+  private int advance(int len) {
+    int off = tail;
+    tail += len;
+    return off;
+  }
+
+  private void evictHead() {
+    int off = head;
+    int len = data.getInt(off);
+    int slot = slotFor(data.getLong(off + 4), off);
+    if (slot >= 0) removeSlot(slot);
+    ringEntries--;
+    head += len;
+    if (wrapped && head == wrapEnd) {
+      head = 0;
+      wrapped = false;
+    }
+  }
+
+  // --- index: linear probing with backward-shift deletion ---
+
+  private long slotHash(int slot) { return index.getLong(slot * SLOT); }
+  private int offset(int slot) { return index.getInt(slot * SLOT + 8) - 1; }
+  private boolean empty(int slot) { return index.getInt(slot * SLOT + 8) == 0; }
+
+  private int find(long hash, byte[] key) {
+    for (int slot = (int) hash & mask; !empty(slot); slot = (slot + 1) & mask) {
+      if (slotHash(slot) == hash && keyEquals(offset(slot), key)) return slot;
+    }
+    return -1;
+  }
+
+  private int slotFor(long hash, int off) {
+    for (int slot = (int) hash & mask; !empty(slot); slot = (slot + 1) & mask) {
+      if (offset(slot) == off) return slot;
+    }
+    return -1;
+  }
+
+  private boolean keyEquals(int off, byte[] key) {
+    if ((data.getShort(off + 20) & 0xFFFF) != key.length) return false;
+    for (int i = 0; i < key.length; i++) {
+      if (data.get(off + HEADER + i) != key[i]) return false;
+    }
+    return true;
+  }
+
+  private void insertSlot(long hash, int off) {
+    int slot = (int) hash & mask;
+    while (!empty(slot)) slot = (slot + 1) & mask;
+    index.putLong(slot * SLOT, hash).putInt(slot * SLOT + 8, off + 1);
+    size++;
+  }
+
+  private void removeSlot(int hole) {
+    int j = hole;
+    while (true) {
+      j = (j + 1) & mask;
+      if (empty(j)) break;
+      int home = (int) slotHash(j) & mask;
+      // Move j into the hole unless its home lies cyclically in (hole, j]
+      boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+      if (!stays) {
+        index.putLong(hole * SLOT, slotHash(j)).putInt(hole * SLOT + 8, offset(j) + 1);
+        hole = j;
+      }
+    }
+    index.putLong(hole * SLOT, 0L).putInt(hole * SLOT + 8, 0);
+    size--;
+  }
+}
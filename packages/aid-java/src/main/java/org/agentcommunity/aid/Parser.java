@@ -1,6 +1,7 @@
 package org.agentcommunity.aid;
 
-import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -13,6 +14,113 @@ public final class Parser {
     return validateRecord(raw);
   }
 
+  /**
+   * Parses TXT RDATA in DNS wire format: a series of length-prefixed character-strings that are
+   * joined without separators into one record. Reads from the buffer's position to its limit
+   * without moving either. Pairs are tokenized on the raw bytes; no String is built for the whole
+   * record, only for the values that are kept.
+   */
+  public static AidRecord parse(ByteBuffer txtRdata) {
+    Map<String, String> raw = parseRawRdata(txtRdata);
+    return validateRecord(raw);
+  }
+
+  // Keys kept by parseRawRecord, in the form its switch matches them
+  private static final String[] KNOWN_KEYS = {
+    "v", "uri", "u", "proto", "p", "auth", "a", "desc", "s", "docs", "d", "dep", "e", "pka", "k", "kid", "i"
+  };
+
+  private static Map<String, String> parseRawRdata(ByteBuffer rdata) {
+    int start = rdata.position();
+    int end = rdata.limit();
+    int total = 0;
+    for (int p = start; p < end; ) {
+      int len = rdata.get(p) & 0xff;
+      p += 1 + len;
+      if (p > end) throw AidError.expected("ERR_INVALID_TXT", "Malformed TXT RDATA: character-string overruns RDATA");
+      total += len;
+    }
+    Map<String, String> record = new HashMap<>();
+    // One pair at a time; pairs may span character-string boundaries
+    byte[] pair = new byte[Math.min(total, 256)];
+    int n = 0;
+    for (int p = start; p < end; ) {
+      int len = rdata.get(p++) & 0xff;
+      for (int stop = p + len; p < stop; p++) {
+        byte b = rdata.get(p);
+        if (b == ';') {
+          addRawPair(record, pair, n);
+          n = 0;
+          continue;
+        }
+        if (n == pair.length) pair = java.util.Arrays.copyOf(pair, Math.min(total, pair.length * 2));
+        pair[n++] = b;
+      }
+    }
+    addRawPair(record, pair, n);
+    return record;
+  }
+
+  // Byte-level mirror of the per-pair rules in parseRawRecord. Trimming bytes <= 0x20 matches
+  // String.trim() on the decoded text, as those bytes never occur inside a multi-byte UTF-8 sequence.
+  private static void addRawPair(Map<String, String> record, byte[] b, int len) {
+    int s = 0;
+    int e = len;
+    while (s < e && (b[s] & 0xff) <= ' ') s++;
+    while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+    if (s == e) return;
+    int eq = -1;
+    for (int i = s; i < e; i++) {
+      if (b[i] == '=') { eq = i; break; }
+    }
+    if (eq < 0) {
+      throw AidError.expected("ERR_INVALID_TXT", "Invalid key-value pair: " + new String(b, s, e - s, StandardCharsets.UTF_8));
+    }
+    int ke = eq;
+    while (ke > s && (b[ke - 1] & 0xff) <= ' ') ke--;
+    int vs = eq + 1;
+    while (vs < e && (b[vs] & 0xff) <= ' ') vs++;
+    if (ke == s || vs == e) {
+      throw AidError.expected("ERR_INVALID_TXT", "Empty key or value in pair: " + new String(b, s, e - s, StandardCharsets.UTF_8));
+    }
+    String key = knownKey(b, s, ke);
+    if (key == null) {
+      // Non-ASCII keys take the String path so Locale.ROOT case folding behaves identically
+      for (int i = s; i < ke; i++) {
+        if (b[i] < 0) {
+          key = new String(b, s, ke - s, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT);
+          break;
+        }
+      }
+      if (key == null) return; // unknown ASCII key: ignored, and never counts as a duplicate
+    }
+    if (record.containsKey(key)) {
+      throw AidError.expected("ERR_INVALID_TXT", "Duplicate key: " + key);
+    }
+    for (String k : KNOWN_KEYS) {
+      if (k.equals(key)) {
+        record.put(k, new String(b, vs, e - vs, StandardCharsets.UTF_8));
+        return;
+      }
+    }
+  }
+
+  /** Case-insensitive ASCII match of {@code b[from, to)} against KNOWN_KEYS; null if none match. */
+  private static String knownKey(byte[] b, int from, int to) {
+    int len = to - from;
+    outer:
+    for (String k : KNOWN_KEYS) {
+      if (k.length() != len) continue;
+      for (int i = 0; i < len; i++) {
+        int c = b[from + i];
+        if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+        if (c != k.charAt(i)) continue outer;
+      }
+      return k;
+    }
+    return null;
+  }
+
   private static Map<String, String> parseRawRecord(String txtRecord) {
     Map<String, String> record = new HashMap<>();
     String[] parts = txtRecord.split(";");
@@ -21,15 +129,15 @@ public final class Parser {
       if (pair.isEmpty()) continue;
       int idx = pair.indexOf('=');
       if (idx < 0) {
-        throw new AidError("ERR_INVALID_TXT", "Invalid key-value pair: " + pair);
+        throw AidError.expected("ERR_INVALID_TXT", "Invalid key-value pair: " + pair);
       }
       String key = pair.substring(0, idx).trim().toLowerCase(Locale.ROOT);
       String value = pair.substring(idx + 1).trim();
       if (key.isEmpty() || value.isEmpty()) {
-        throw new AidError("ERR_INVALID_TXT", "Empty key or value in pair: " + pair);
+        throw AidError.expected("ERR_INVALID_TXT", "Empty key or value in pair: " + pair);
       }
       if (record.containsKey(key)) {
-        throw new AidError("ERR_INVALID_TXT", "Duplicate key: " + key);
+        throw AidError.expected("ERR_INVALID_TXT", "Duplicate key: " + key);
       }
       // Only store known keys; ignore unknown for fwd-compat
       switch (key) {
@@ -62,29 +170,29 @@ public final class Parser {
   public static AidRecord validateRecord(Map<String, String> raw) {
     // Required fields
     if (!raw.containsKey("v")) {
-      throw new AidError("ERR_INVALID_TXT", "Missing required field: v");
+      throw AidError.expected("ERR_INVALID_TXT", "Missing required field: v");
     }
     boolean hasUri = raw.containsKey("uri");
     boolean hasU = raw.containsKey("u");
     if (hasUri && hasU) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"uri\" and \"u\"");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"uri\" and \"u\"");
     }
     if (!hasUri && !hasU) {
-      throw new AidError("ERR_INVALID_TXT", "Missing required field: uri");
+      throw AidError.expected("ERR_INVALID_TXT", "Missing required field: uri");
     }
 
     boolean hasProto = raw.containsKey("proto");
     boolean hasP = raw.containsKey("p");
     if (hasProto && hasP) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"proto\" and \"p\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"proto\" and \"p\" fields");
     }
     if (!hasProto && !hasP) {
-      throw new AidError("ERR_INVALID_TXT", "Missing required field: proto (or p)");
+      throw AidError.expected("ERR_INVALID_TXT", "Missing required field: proto (or p)");
     }
 
     String version = raw.get("v");
     if (!Constants.SPEC_VERSION.equals(version)) {
-      throw new AidError(
+      throw AidError.expected(
           "ERR_INVALID_TXT",
           "Unsupported version: " + version + ". Expected: " + Constants.SPEC_VERSION);
     }
@@ -93,61 +201,56 @@ public final class Parser {
 
     // Validate protocol token: only compare against known constants
     if (!isValidProto(protoValue)) {
-      throw new AidError("ERR_UNSUPPORTED_PROTO", "Unsupported protocol: " + protoValue);
+      throw AidError.expected("ERR_UNSUPPORTED_PROTO", "Unsupported protocol: " + protoValue);
     }
 
     // Auth token
     if (raw.containsKey("auth") && raw.containsKey("a")) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"auth\" and \"a\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"auth\" and \"a\" fields");
     }
     String authVal = raw.containsKey("auth") ? raw.get("auth") : (raw.containsKey("a") ? raw.get("a") : null);
     if (authVal != null && !isValidAuth(authVal)) {
-      throw new AidError("ERR_INVALID_TXT", "Invalid auth token: " + authVal);
+      throw AidError.expected("ERR_INVALID_TXT", "Invalid auth token: " + authVal);
     }
 
     // Desc length check (≤ 60 UTF-8 bytes)
     if (raw.containsKey("desc") && raw.containsKey("s")) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"desc\" and \"s\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"desc\" and \"s\" fields");
     }
     String descVal = raw.containsKey("desc") ? raw.get("desc") : (raw.containsKey("s") ? raw.get("s") : null);
     if (descVal != null) {
       int bytes = descVal.getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
       if (bytes > 60) {
-        throw new AidError("ERR_INVALID_TXT", "Description field must be ≤ 60 UTF-8 bytes");
+        throw AidError.expected("ERR_INVALID_TXT", "Description field must be ≤ 60 UTF-8 bytes");
       }
     }
     if (raw.containsKey("docs") && raw.containsKey("d")) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"docs\" and \"d\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"docs\" and \"d\" fields");
     }
     String docsVal = raw.containsKey("docs") ? raw.get("docs") : (raw.containsKey("d") ? raw.get("d") : null);
     if (docsVal != null) {
       if (!docsVal.startsWith("https://")) {
-        throw new AidError("ERR_INVALID_TXT", "docs MUST be an absolute https:// URL");
+        throw AidError.expected("ERR_INVALID_TXT", "docs MUST be an absolute https:// URL");
       }
-      try {
-        java.net.URI du = java.net.URI.create(docsVal);
-        if (!"https".equals(du.getScheme()) || du.getHost() == null) {
-          throw new IllegalArgumentException();
-        }
-      } catch (Exception e) {
-        throw new AidError("ERR_INVALID_TXT", "Invalid docs URL: " + docsVal);
+      if (!UriCheck.hasHost(docsVal, "https")) {
+        throw AidError.expected("ERR_INVALID_TXT", "Invalid docs URL: " + docsVal);
       }
     }
     if (raw.containsKey("dep") && raw.containsKey("e")) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"dep\" and \"e\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"dep\" and \"e\" fields");
     }
     String depVal = raw.containsKey("dep") ? raw.get("dep") : (raw.containsKey("e") ? raw.get("e") : null);
     if (depVal != null) {
       if (!depVal.endsWith("Z")) {
-        throw new AidError("ERR_INVALID_TXT", "dep MUST be an ISO 8601 UTC timestamp (e.g., 2026-01-01T00:00:00Z)");
+        throw AidError.expected("ERR_INVALID_TXT", "dep MUST be an ISO 8601 UTC timestamp (e.g., 2026-01-01T00:00:00Z)");
       }
       try {
         java.time.Instant dep = java.time.Instant.parse(depVal);
         if (dep.isBefore(java.time.Instant.now())) {
-          throw new AidError("ERR_INVALID_TXT", "Record is deprecated as of " + depVal);
+          throw AidError.expected("ERR_INVALID_TXT", "Record is deprecated as of " + depVal);
         }
       } catch (java.time.format.DateTimeParseException e) {
-        throw new AidError("ERR_INVALID_TXT", "dep MUST be an ISO 8601 UTC timestamp (e.g., 2026-01-01T00:00:00Z)");
+        throw AidError.expected("ERR_INVALID_TXT", "dep MUST be an ISO 8601 UTC timestamp (e.g., 2026-01-01T00:00:00Z)");
       }
     }
 
@@ -156,58 +259,48 @@ public final class Parser {
       // must be allowed local scheme
       String scheme = extractScheme(uri);
       if (!isAllowedLocalScheme(scheme)) {
-        throw new AidError(
+        throw AidError.expected(
             "ERR_INVALID_TXT",
             "Invalid URI scheme for local protocol. Must be one of: " + String.join(", ", Constants.LOCAL_URI_SCHEMES));
       }
     } else if ("zeroconf".equals(protoValue)) {
       if (!uri.startsWith("zeroconf:")) {
-        throw new AidError(
+        throw AidError.expected(
             "ERR_INVALID_TXT",
             "Invalid URI scheme for 'zeroconf'. MUST be 'zeroconf:'");
       }
     } else if ("websocket".equals(protoValue)) {
       if (!uri.startsWith("wss://")) {
-        throw new AidError(
+        throw AidError.expected(
             "ERR_INVALID_TXT",
             "Invalid URI scheme for 'websocket'. MUST be 'wss:'");
       }
-      try {
-        java.net.URI wu = java.net.URI.create(uri);
-        if (!"wss".equals(wu.getScheme()) || wu.getHost() == null) {
-          throw new IllegalArgumentException();
-        }
-      } catch (Exception e) {
-        throw new AidError("ERR_INVALID_TXT", "Invalid URI format: " + uri);
+      if (!UriCheck.hasHost(uri, "wss")) {
+        throw AidError.expected("ERR_INVALID_TXT", "Invalid URI format: " + uri);
       }
     } else {
       if (!uri.startsWith("https://")) {
-        throw new AidError(
+        throw AidError.expected(
             "ERR_INVALID_TXT",
             "Invalid URI scheme for remote protocol '" + protoValue + "'. MUST be 'https:'");
       }
-      try {
-        URI u = URI.create(uri);
-        if (u.getScheme() == null || u.getHost() == null) {
-          throw new IllegalArgumentException();
-        }
-      } catch (Exception e) {
-        throw new AidError("ERR_INVALID_TXT", "Invalid URI format: " + uri);
+      if (!UriCheck.hasHost(uri, "https")) {
+        throw AidError.expected("ERR_INVALID_TXT", "Invalid URI format: " + uri);
       }
     }
 
     String auth = authVal;
     String desc = descVal;
     if (raw.containsKey("pka") && raw.containsKey("k")) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"pka\" and \"k\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"pka\" and \"k\" fields");
     }
     if (raw.containsKey("kid") && raw.containsKey("i")) {
-      throw new AidError("ERR_INVALID_TXT", "Cannot specify both \"kid\" and \"i\" fields");
+      throw AidError.expected("ERR_INVALID_TXT", "Cannot specify both \"kid\" and \"i\" fields");
     }
     String pkaVal = raw.containsKey("pka") ? raw.get("pka") : (raw.containsKey("k") ? raw.get("k") : null);
     String kidVal = raw.containsKey("kid") ? raw.get("kid") : (raw.containsKey("i") ? raw.get("i") : null);
     if (pkaVal != null && kidVal == null) {
-      throw new AidError("ERR_INVALID_TXT", "kid is required when pka is present");
+      throw AidError.expected("ERR_INVALID_TXT", "kid is required when pka is present");
     }
     return new AidRecord(Constants.SPEC_VERSION, uri, protoValue, auth, desc, docsVal, depVal, pkaVal, kidVal);
   }
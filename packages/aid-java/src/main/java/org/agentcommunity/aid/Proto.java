@@ -0,0 +1,27 @@
+package org.agentcommunity.aid;
+
+/** Protocol tokens ({@code proto}/{@code p}) as an enum; mirrors the generated {@code Constants.PROTO_*}. */
+public enum Proto {
+  MCP(Constants.PROTO_MCP),
+  A2A(Constants.PROTO_A2A),
+  OPENAPI(Constants.PROTO_OPENAPI),
+  LOCAL(Constants.PROTO_LOCAL),
+  GRPC(Constants.PROTO_GRPC),
+  GRAPHQL(Constants.PROTO_GRAPHQL),
+  UCP(Constants.PROTO_UCP),
+  WEBSOCKET(Constants.PROTO_WEBSOCKET),
+  ZEROCONF(Constants.PROTO_ZEROCONF);
+
+  public final String token;
+
+  Proto(String token) { this.token = token; }
+
+  /** Returns null for tokens this client does not know. */
+  public static Proto fromToken(String token) {
+    if (token == null) return null;
+    for (Proto p : values()) {
+      if (p.token.equals(token)) return p;
+    }
+    return null;
+  }
+}
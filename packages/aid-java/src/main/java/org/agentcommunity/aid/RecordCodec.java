@@ -0,0 +1,75 @@
+package org.agentcommunity.aid;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of a {@link Discovery.DiscoveryResult}, used by {@link DiscoverySidecar} responses.
+ *
+ * <p>Layout, big-endian: {@code u8} format version (1), {@code i32} TTL, then {@code queryName} and
+ * the record fields v, uri, proto, auth, desc, docs, dep, pka, kid, each as a {@code u16} byte
+ * length followed by that many UTF-8 bytes. Length {@code 0xFFFF} marks an absent field.
+ */
+final class RecordCodec {
+  private RecordCodec() {}
+
+  static final String CONTENT_TYPE = "application/vnd.aid.record";
+  static final byte VERSION = 1;
+  private static final int ABSENT = 0xFFFF;
+
+  static byte[] encode(Discovery.DiscoveryResult r) {
+    byte[][] fields = fields(r);
+    int size = 1 + 4;
+    for (byte[] f : fields) size += 2 + (f == null ? 0 : f.length);
+    ByteBuffer out = ByteBuffer.allocate(size);
+    out.put(VERSION).putInt(r.ttl);
+    for (byte[] f : fields) {
+      if (f == null) {
+        out.putShort((short) ABSENT);
+      } else {
+        out.putShort((short) f.length).put(f);
+      }
+    }
+    return out.array();
+  }
+
+  private static byte[][] fields(Discovery.DiscoveryResult r) {
+    AidRecord a = r.record;
+    String[] values = {r.queryName, a.v, a.uri, a.proto, a.auth, a.desc, a.docs, a.dep, a.pka, a.kid};
+    byte[][] out = new byte[values.length][];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) continue;
+      out[i] = values[i].getBytes(StandardCharsets.UTF_8);
+      if (out[i].length >= ABSENT) throw new IllegalArgumentException("Field too long for binary record: " + out[i].length + " bytes");
+    }
+    return out;
+  }
+
+  /** Reads one result from {@code in}'s position; throws {@code IllegalArgumentException} on malformed input. */
+  static Discovery.DiscoveryResult decode(ByteBuffer in) {
+    try {
+      byte version = in.get();
+      if (version != VERSION) throw new IllegalArgumentException("Unsupported binary record version: " + version);
+      int ttl = in.getInt();
+      String queryName = string(in);
+      AidRecord rec = new AidRecord(string(in), string(in), string(in), string(in), string(in), string(in), string(in), string(in), string(in));
+      return new Discovery.DiscoveryResult(rec, ttl, queryName);
+    } catch (java.nio.BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated binary record");
+    }
+  }
+
+  private static String string(ByteBuffer in) {
+    int len = in.getShort() & 0xFFFF;
+    if (len == ABSENT) return null;
+    if (len > in.remaining()) throw new IllegalArgumentException("Truncated binary record");
+    if (in.hasArray()) {
+      String s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+      in.position(in.position() + len);
+      return s;
+    }
+    byte[] b = new byte[len];
+    in.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,56 @@
+package org.agentcommunity.aid;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/** Resolves through a {@link DiscoverySidecar}; see {@link Discovery.DiscoveryOptions#sidecar}. */
+final class SidecarClient {
+  private SidecarClient() {}
+
+  /**
+   * Null when the sidecar cannot be reached, so the caller can resolve locally instead. A sidecar
+   * that does not answer within {@code timeout} fails the lookup: the time is already spent.
+   */
+  static Discovery.DiscoveryResult discover(URI sidecar, String domain, String protocol, Duration timeout, HttpClient http) {
+    StringBuilder url = new StringBuilder(sidecar.toString());
+    if (url.length() > 0 && url.charAt(url.length() - 1) == '/') url.setLength(url.length() - 1);
+    url.append(DiscoverySidecar.PATH).append("?format=binary&domain=").append(URLEncoder.encode(domain, StandardCharsets.UTF_8));
+    if (protocol != null && !protocol.isEmpty()) url.append("&protocol=").append(URLEncoder.encode(protocol, StandardCharsets.UTF_8));
+    HttpRequest req = HttpRequest.newBuilder(URI.create(url.toString())).timeout(timeout).GET().build();
+    HttpResponse<byte[]> res;
+    try {
+      res = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (HttpTimeoutException e) {
+      throw AidError.expected("ERR_DNS_LOOKUP_FAILED", "Sidecar did not answer for " + domain + " within " + timeout.toMillis() + " ms");
+    } catch (IOException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AidError("ERR_DNS_LOOKUP_FAILED", "Interrupted");
+    }
+    if (res.statusCode() == 200) {
+      try {
+        return RecordCodec.decode(ByteBuffer.wrap(res.body()));
+      } catch (IllegalArgumentException e) {
+        throw new AidError("ERR_DNS_LOOKUP_FAILED", "Invalid sidecar response: " + e.getMessage());
+      }
+    }
+    String errorCode = res.headers().firstValue(DiscoverySidecar.ERROR_HEADER).orElse(null);
+    if (errorCode != null) {
+      try {
+        throw new AidError(errorCode, new String(res.body(), StandardCharsets.UTF_8));
+      } catch (IllegalArgumentException unknownCode) {
+        // not one of ours; report as a failed lookup below
+      }
+    }
+    throw new AidError("ERR_DNS_LOOKUP_FAILED", "Sidecar HTTP " + res.statusCode());
+  }
+}
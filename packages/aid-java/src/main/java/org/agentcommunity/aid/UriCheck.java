@@ -0,0 +1,109 @@
+package org.agentcommunity.aid;
+
+import java.net.URI;
+
+/**
+ * Allocation-free check for the {@code scheme://host[:port][/path][?query][#fragment]} forms the
+ * spec allows for {@code uri} and {@code docs}.
+ *
+ * <p>Answers exactly what {@code URI.create(uri)} plus a scheme and {@code getHost() != null} check
+ * would. Inputs inside a conservative subset of RFC 2396 (LDH hostname whose last label starts with
+ * a letter, numeric port, ASCII path/query/fragment) are accepted directly, inputs containing ASCII
+ * characters java.net.URI never allows are rejected directly, and anything else (IP literals,
+ * userinfo, non-ASCII, trailing dots, ...) is delegated to java.net.URI.
+ */
+final class UriCheck {
+  private UriCheck() {}
+
+  private static final int REJECT = 0;
+  private static final int ACCEPT = 1;
+  private static final int UNSURE = 2;
+
+  // Character classes from java.net.URI / RFC 2396, ASCII only
+  private static final boolean[] ALNUM = mask("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789");
+  private static final String UNRESERVED = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.!~*'()";
+  private static final boolean[] PATH = mask(UNRESERVED + ":@&=+$,;/");
+  private static final boolean[] URIC = mask(UNRESERVED + ";/?:@&=+$,[]");
+  private static final boolean[] ANY = mask(UNRESERVED + ";/?:@&=+$,[]%#");
+
+  private static boolean[] mask(String chars) {
+    boolean[] m = new boolean[128];
+    for (int i = 0; i < chars.length(); i++) m[chars.charAt(i)] = true;
+    return m;
+  }
+
+  /** {@code uri} must already start with {@code scheme + "://"}. */
+  static boolean hasHost(String uri, String scheme) {
+    switch (quickCheck(uri, scheme.length() + 3)) {
+      case ACCEPT:
+        return true;
+      case REJECT:
+        return false;
+      default:
+        try {
+          URI u = URI.create(uri);
+          return scheme.equals(u.getScheme()) && u.getHost() != null;
+        } catch (IllegalArgumentException e) {
+          return false;
+        }
+    }
+  }
+
+  static int quickCheck(String s, int start) {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (c >= 128) return UNSURE;
+      if (!ANY[c]) return REJECT;
+    }
+
+    // host: LDH labels, the last one starting with a letter; no trailing dot
+    int p = start;
+    int lastLabel = -1;
+    while (true) {
+      int labelStart = p;
+      while (p < n && (ALNUM[s.charAt(p)] || s.charAt(p) == '-')) p++;
+      if (p == labelStart || s.charAt(labelStart) == '-' || s.charAt(p - 1) == '-') return UNSURE;
+      lastLabel = labelStart;
+      if (p < n && s.charAt(p) == '.') {
+        p++;
+        continue;
+      }
+      break;
+    }
+    char first = s.charAt(lastLabel);
+    if (first >= '0' && first <= '9') return UNSURE;
+
+    // port: 1-5 digits
+    if (p < n && s.charAt(p) == ':') {
+      int portStart = ++p;
+      while (p < n && s.charAt(p) >= '0' && s.charAt(p) <= '9') p++;
+      if (p == portStart || p - portStart > 5) return UNSURE;
+    }
+    if (p == n) return ACCEPT;
+    char c = s.charAt(p);
+    if (c != '/' && c != '?' && c != '#') return UNSURE;
+
+    boolean[] allowed = PATH;
+    boolean inFragment = false;
+    for (; p < n; p++) {
+      c = s.charAt(p);
+      if (c == '%') {
+        if (p + 2 >= n || !isHex(s.charAt(p + 1)) || !isHex(s.charAt(p + 2))) return UNSURE;
+        p += 2;
+      } else if (c == '?' && allowed == PATH) {
+        allowed = URIC;
+      } else if (c == '#' && !inFragment) {
+        allowed = URIC;
+        inFragment = true;
+      } else if (!allowed[c]) {
+        return UNSURE;
+      }
+    }
+    return ACCEPT;
+  }
+
+  private static boolean isHex(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+}
@@ -1,25 +1,25 @@
 package org.agentcommunity.aid;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class WellKnown {
   private WellKnown() {}
 
-  private static Map<String, String> parseSimpleJsonObject(String json) throws java.io.IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    TypeReference<HashMap<String, String>> typeRef = new TypeReference<>() {};
-    return mapper.readValue(json, typeRef);
+  private static Map<String, String> parseSimpleJsonObject(String json) throws Json.JsonException {
+    return Json.parseStringMap(json);
   }
 
   private static String canonicalizeToTxt(Map<String, String> obj) {
@@ -46,18 +46,179 @@ public final class WellKnown {
     return sb.toString();
   }
 
+  /**
+   * A verified well-known document: its freshness lifetime in seconds ({@code Cache-Control:
+   * max-age} clamped to the DNS TTL range, {@link Constants#DNS_TTL_MIN} without one) and the
+   * validators to revalidate it with.
+   */
+  static final class Document {
+    final AidRecord record;
+    final int ttl;
+    final String etag;         // nullable
+    final String lastModified; // nullable
+
+    Document(AidRecord record, int ttl, String etag, String lastModified) {
+      this.record = record;
+      this.ttl = ttl;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+  }
+
+  // Last verified document per URL, for conditional requests; only documents with validators
+  private static final Map<String, Document> VALIDATED = new ConcurrentHashMap<>();
+  private static final int MAX_VALIDATED = 10_000;
+
   public static AidRecord fetch(String domain, Duration timeout, boolean allowInsecure) {
-    String scheme = allowInsecure ? "http" : "https";
-    String url = scheme + "://" + domain + "/.well-known/agent";
-    HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).connectTimeout(timeout).build();
-    HttpRequest req = HttpRequest.newBuilder(URI.create(url)).timeout(timeout).GET().build();
+    return fetch(domain, timeout, allowInsecure, Deadline.none(), Http.SHARED, null).record;
+  }
+
+  /**
+   * Fetches and verifies the document. When an earlier response carried an {@code ETag} or {@code
+   * Last-Modified}, the request is conditional and a 304 returns the earlier record without parsing
+   * it or repeating the PKA handshake. The handshake is held to {@code limits} when non-null.
+   */
+  static Document fetch(String domain, Duration timeout, boolean allowInsecure, Deadline deadline, HttpClient http,
+      AdaptiveConcurrency limits) {
+    timeout = deadline.remaining(timeout, "ERR_FALLBACK_FAILED", "well-known fallback for " + domain);
+    String url = url(domain, allowInsecure);
+    Document previous = VALIDATED.get(url);
     HttpResponse<String> res;
     try {
-      res = http.send(req, HttpResponse.BodyHandlers.ofString());
+      res = http.send(request(url, timeout, previous), HttpResponse.BodyHandlers.ofString());
     } catch (Exception e) {
       throw new AidError("ERR_FALLBACK_FAILED", e.getMessage());
     }
-    if (res.statusCode() / 100 != 2) throw new AidError("ERR_FALLBACK_FAILED", "Well-known HTTP " + res.statusCode());
+    if (res.statusCode() == 304 && previous != null) return remember(url, revalidated(previous, res));
+    AidRecord rec = toRecord(res, domain, allowInsecure);
+    if (rec.pka != null) {
+      Duration t = deadline.remaining(timeout, "ERR_SECURITY", "PKA handshake with " + rec.uri);
+      Handshake.performHandshake(rec.uri, rec.pka, rec.kid == null ? "" : rec.kid, t, http, limits);
+    }
+    return remember(url, document(rec, res));
+  }
+
+  /**
+   * Non-blocking {@link #fetch}, including the PKA handshake; fails with the same {@link AidError}s.
+   * Cancelling the returned future aborts whichever request is in flight.
+   */
+  static CompletableFuture<Document> fetchAsync(String domain, Duration timeout, boolean allowInsecure, Deadline deadline, HttpClient http,
+      AdaptiveConcurrency limits) {
+    Duration stepTimeout;
+    String url = url(domain, allowInsecure);
+    Document previous = VALIDATED.get(url);
+    HttpRequest req;
+    try {
+      stepTimeout = deadline.remaining(timeout, "ERR_FALLBACK_FAILED", "well-known fallback for " + domain);
+      req = request(url, stepTimeout, previous);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<>();
+    CompletableFuture<HttpResponse<String>> exchange = http.sendAsync(req, HttpResponse.BodyHandlers.ofString());
+    inFlight.set(exchange);
+    CompletableFuture<Document> result = exchange.handle((res, err) -> {
+      if (err != null) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        throw new AidError("ERR_FALLBACK_FAILED", cause.getMessage());
+      }
+      return res;
+    }).thenCompose(res -> {
+      if (res.statusCode() == 304 && previous != null) return CompletableFuture.completedFuture(remember(url, revalidated(previous, res)));
+      AidRecord rec = toRecord(res, domain, allowInsecure);
+      if (rec.pka == null) return CompletableFuture.completedFuture(remember(url, document(rec, res)));
+      Duration t = deadline.remaining(stepTimeout, "ERR_SECURITY", "PKA handshake with " + rec.uri);
+      CompletableFuture<Void> h = Handshake.performHandshakeAsync(rec.uri, rec.pka, rec.kid == null ? "" : rec.kid, t, http, limits);
+      inFlight.set(h);
+      return h.thenApply(v -> remember(url, document(rec, res)));
+    });
+    result.whenComplete((r, err) -> {
+      if (result.isCancelled()) inFlight.get().cancel(true);
+    });
+    return result;
+  }
+
+  /** A non-2xx answer to the well-known request itself, keeping its status. */
+  static final class StatusError extends AidError {
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+
+    StatusError(int status) {
+      super("ERR_FALLBACK_FAILED", "Well-known HTTP " + status, false);
+      this.status = status;
+    }
+  }
+
+  /** True when {@code e} means the domain publishes no well-known document (HTTP 404 or 410). */
+  static boolean isNotFound(AidError e) {
+    return e instanceof StatusError && (((StatusError) e).status == 404 || ((StatusError) e).status == 410);
+  }
+
+  private static String url(String domain, boolean allowInsecure) {
+    return (allowInsecure ? "http" : "https") + "://" + domain + "/.well-known/agent";
+  }
+
+  private static HttpRequest request(String url, Duration timeout, Document previous) {
+    HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(url)).timeout(timeout).GET();
+    if (previous != null && previous.etag != null) b.header("If-None-Match", previous.etag);
+    if (previous != null && previous.lastModified != null) b.header("If-Modified-Since", previous.lastModified);
+    return b.build();
+  }
+
+  private static Document document(AidRecord rec, HttpResponse<String> res) {
+    boolean noStore = res.headers().allValues("cache-control").stream()
+        .anyMatch(v -> v.toLowerCase(Locale.ROOT).contains("no-store"));
+    if (noStore) return new Document(rec, Constants.DNS_TTL_MIN, null, null);
+    return new Document(rec, maxAge(res, Constants.DNS_TTL_MIN),
+        res.headers().firstValue("etag").orElse(null), res.headers().firstValue("last-modified").orElse(null));
+  }
+
+  // A 304 may update freshness and validators; anything it omits carries over
+  private static Document revalidated(Document previous, HttpResponse<String> res) {
+    return new Document(previous.record, maxAge(res, previous.ttl),
+        res.headers().firstValue("etag").orElse(previous.etag),
+        res.headers().firstValue("last-modified").orElse(previous.lastModified));
+  }
+
+  private static Document remember(String url, Document doc) {
+    if (doc.etag == null && doc.lastModified == null) {
+      VALIDATED.remove(url);
+    } else {
+      if (VALIDATED.size() >= MAX_VALIDATED && !VALIDATED.containsKey(url)) {
+        Iterator<String> it = VALIDATED.keySet().iterator();
+        if (it.hasNext()) {
+          it.next();
+          it.remove();
+        }
+      }
+      VALIDATED.put(url, doc);
+    }
+    return doc;
+  }
+
+  /** {@code max-age} clamped to [DNS_TTL_MIN, DNS_TTL_MAX]; {@code fallback} when absent or {@code no-store}/{@code no-cache}. */
+  static int maxAge(HttpResponse<?> res, int fallback) {
+    Integer maxAge = null;
+    for (String value : res.headers().allValues("cache-control")) {
+      for (String directive : value.split(",")) {
+        String d = directive.trim().toLowerCase(Locale.ROOT);
+        if (d.equals("no-store") || d.equals("no-cache")) return Constants.DNS_TTL_MIN;
+        if (d.startsWith("max-age=")) {
+          try {
+            maxAge = Integer.parseInt(d.substring(8).replace("\"", ""));
+          } catch (NumberFormatException e) {
+            // ignore a malformed directive
+          }
+        }
+      }
+    }
+    if (maxAge == null) return fallback;
+    return Math.max(Constants.DNS_TTL_MIN, Math.min(Constants.DNS_TTL_MAX, maxAge));
+  }
+
+  private static AidRecord toRecord(HttpResponse<String> res, String domain, boolean allowInsecure) {
+    if (res.statusCode() / 100 != 2) throw new StatusError(res.statusCode());
     String ct = res.headers().firstValue("content-type").orElse("").toLowerCase(Locale.ROOT);
     if (!ct.startsWith("application/json")) throw new AidError("ERR_FALLBACK_FAILED", "Invalid content-type for well-known (expected application/json)");
     String text = res.body();
@@ -88,9 +249,6 @@ public final class WellKnown {
       // Restore http URI in the resulting record
       rec = new AidRecord(validated.v, uri, validated.proto, validated.auth, validated.desc, validated.docs, validated.dep, validated.pka, validated.kid);
     }
-    if (rec.pka != null) {
-      Handshake.performHandshake(rec.uri, rec.pka, rec.kid == null ? "" : rec.kid, timeout);
-    }
     return rec;
   }
 }
@@ -0,0 +1,146 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveConcurrencyTest {
+  private static CompletableFuture<String> run(AdaptiveConcurrency.Limiter l, CompletableFuture<String> call,
+      AdaptiveConcurrency.Signal signal) {
+    return l.call("ERR_DNS_LOOKUP_FAILED", Duration.ofSeconds(5), left -> call, (r, e) -> signal);
+  }
+
+  @Test
+  void overloadCutsTheLimitAndSuccessGrowsItBack() {
+    AdaptiveConcurrency ac = new AdaptiveConcurrency();
+    ac.initialLimit = 16;
+    AdaptiveConcurrency.Limiter l = ac.limiter("doh");
+
+    run(l, CompletableFuture.completedFuture("x"), AdaptiveConcurrency.Signal.OVERLOAD);
+    assertEquals(8, ac.limit("doh"));
+
+    for (int i = 0; i < 200; i++) run(l, CompletableFuture.completedFuture("x"), AdaptiveConcurrency.Signal.SUCCESS);
+    assertTrue(ac.limit("doh") > 8, "limit should grow on fast successes: " + ac.limit("doh"));
+    assertEquals(0, ac.inFlight("doh"));
+    assertEquals(-1, ac.limit("never-contacted"));
+  }
+
+  @Test
+  void queuesOverTheLimitAndShedsPastTheQueue() throws Exception {
+    AdaptiveConcurrency ac = new AdaptiveConcurrency();
+    ac.initialLimit = 1;
+    ac.maxQueued = 1;
+    AdaptiveConcurrency.Limiter l = ac.limiter("agent.example:443");
+
+    CompletableFuture<String> first = new CompletableFuture<>();
+    CompletableFuture<String> a = run(l, first, AdaptiveConcurrency.Signal.SUCCESS);
+    CompletableFuture<String> b = run(l, CompletableFuture.completedFuture("queued"), AdaptiveConcurrency.Signal.SUCCESS);
+    CompletableFuture<String> c = run(l, CompletableFuture.completedFuture("shed"), AdaptiveConcurrency.Signal.SUCCESS);
+
+    assertEquals(1, ac.inFlight("agent.example:443"));
+    assertFalse(b.isDone());
+    ExecutionException shed = assertThrows(ExecutionException.class, c::get);
+    AidError err = (AidError) shed.getCause();
+    assertEquals("ERR_DNS_LOOKUP_FAILED", err.errorCode);
+    assertTrue(err.getMessage().contains("agent.example:443 overloaded"), err.getMessage());
+
+    first.complete("done");
+    assertEquals("done", a.get());
+    assertEquals("queued", b.get());
+    assertEquals(0, ac.inFlight("agent.example:443"));
+  }
+
+  @Test
+  void cancelledWaiterLeavesTheQueue() throws Exception {
+    AdaptiveConcurrency ac = new AdaptiveConcurrency();
+    ac.initialLimit = 1;
+    ac.maxQueued = 1;
+    AdaptiveConcurrency.Limiter l = ac.limiter("doh");
+
+    CompletableFuture<String> first = new CompletableFuture<>();
+    run(l, first, AdaptiveConcurrency.Signal.SUCCESS);
+    run(l, new CompletableFuture<>(), AdaptiveConcurrency.Signal.SUCCESS).cancel(true);
+    CompletableFuture<String> next = run(l, CompletableFuture.completedFuture("ok"), AdaptiveConcurrency.Signal.SUCCESS);
+
+    first.complete("done");
+    assertEquals("ok", next.get());
+    assertEquals(0, ac.inFlight("doh"));
+  }
+
+  @Test
+  void queueWaitComesOutOfTheRequestTimeout() throws Exception {
+    AdaptiveConcurrency ac = new AdaptiveConcurrency();
+    ac.initialLimit = 1;
+    AdaptiveConcurrency.Limiter l = ac.limiter("agent.example:443");
+
+    CompletableFuture<String> first = new CompletableFuture<>();
+    run(l, first, AdaptiveConcurrency.Signal.SUCCESS);
+    CompletableFuture<Duration> given = new CompletableFuture<>();
+    CompletableFuture<String> queued = l.call("ERR_SECURITY", Duration.ofMillis(2000), left -> {
+      given.complete(left);
+      return CompletableFuture.completedFuture("ok");
+    }, (r, e) -> AdaptiveConcurrency.Signal.SUCCESS);
+
+    Thread.sleep(500);
+    first.complete("done");
+    assertEquals("ok", queued.get());
+    assertTrue(given.get().toMillis() <= 1500, "request timeout after queueing: " + given.get());
+  }
+
+  @Test
+  void forgetsIdleUpstreams() throws Exception {
+    AdaptiveConcurrency ac = new AdaptiveConcurrency();
+    ac.idleEvictAfter = Duration.ZERO;
+    CompletableFuture<String> busy = new CompletableFuture<>();
+    run(ac.limiter("busy"), busy, AdaptiveConcurrency.Signal.SUCCESS);
+    AdaptiveConcurrency.Limiter idle = ac.limiter("idle");
+    run(idle, CompletableFuture.completedFuture("x"), AdaptiveConcurrency.Signal.SUCCESS);
+
+    ac.limiter("new");
+    assertEquals(-1, ac.limit("idle"));
+    assertEquals(1, ac.inFlight("busy"));
+    assertEquals(2, ac.size());
+
+    // A caller still holding the evicted limiter is served by a fresh one
+    assertEquals("y", run(idle, CompletableFuture.completedFuture("y"), AdaptiveConcurrency.Signal.SUCCESS).get());
+    assertEquals(ac.initialLimit, ac.limit("idle"));
+    busy.complete("done");
+  }
+
+  @Test
+  void holdsDohQueriesToTheLimitAndShedsTheRest() throws Exception {
+    try (StubDohServer doh = new StubDohServer(200, 200)) {
+      Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+      opts.dohEndpoints = List.of(doh.url());
+      opts.wellKnownFallback = false;
+      opts.adaptiveConcurrency = new AdaptiveConcurrency();
+      opts.adaptiveConcurrency.initialLimit = 2;
+      opts.adaptiveConcurrency.maxQueued = 2;
+
+      ExecutorService pool = Executors.newFixedThreadPool(8);
+      List<Future<DiscoveryOutcome>> outcomes = new ArrayList<>();
+      for (int i = 0; i < 8; i++) outcomes.add(pool.submit(() -> Discovery.tryDiscover("example.com", opts)));
+      int ok = 0;
+      int shed = 0;
+      for (Future<DiscoveryOutcome> f : outcomes) {
+        DiscoveryOutcome o = f.get();
+        if (o.isSuccess()) ok++;
+        else if (o.message().contains("overloaded")) shed++;
+        assertTrue(o.isSuccess() || "ERR_DNS_LOOKUP_FAILED".equals(o.errorCode()), String.valueOf(o.message()));
+      }
+      pool.shutdown();
+
+      assertTrue(doh.maxActive.get() <= 2, "in flight: " + doh.maxActive.get());
+      assertEquals(4, ok);
+      assertEquals(4, shed);
+    }
+  }
+}
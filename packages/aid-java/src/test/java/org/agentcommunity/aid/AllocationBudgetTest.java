@@ -0,0 +1,106 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bytes allocated per call on the hot paths, measured with {@code getThreadAllocatedBytes} after
+ * warm-up. Budgets sit roughly 25% above the measured steady state; raise one only with a reason in
+ * the commit that does it, and lower it when an optimization lands.
+ */
+public class AllocationBudgetTest {
+  // Per call, in bytes
+  static final long PARSE_STRING_BUDGET = 1_800;      // measured ~1,450
+  static final long PARSE_RDATA_BUDGET = 1_200;       // measured ~970
+  static final long BASE58_DECODE_BUDGET = 16_000;    // measured 11,200-12,700 (BigInteger arithmetic)
+  static final long SIGNATURE_HEADERS_BUDGET = 4_200; // measured ~3,350
+
+  static final int WARMUP = 20_000;
+  static final int ITERATIONS = 50_000;
+
+  static volatile Object sink;
+  static List<String> golden = new ArrayList<>();
+  static List<ByteBuffer> goldenRdata = new ArrayList<>();
+
+  @BeforeAll
+  static void loadGolden() throws Exception {
+    Path path = Path.of("test-fixtures/golden.json");
+    if (!Files.exists(path)) path = Path.of("../../test-fixtures/golden.json");
+    Map<String, Object> root = Json.asObject(Json.parse(Files.readString(path, StandardCharsets.UTF_8)));
+    for (Object rec : (List<?>) root.get("records")) {
+      String raw = (String) Json.asObject(rec).get("raw");
+      golden.add(raw);
+      goldenRdata.add(ByteBuffer.wrap(rdata(raw)));
+    }
+  }
+
+  private static byte[] rdata(String txt) throws IOException {
+    byte[] b = txt.getBytes(StandardCharsets.UTF_8);
+    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+    for (int i = 0; i < b.length; i += 255) {
+      int n = Math.min(255, b.length - i);
+      out.write(n);
+      out.write(b, i, n);
+    }
+    return out.toByteArray();
+  }
+
+  /** Average bytes allocated by {@code op.apply(i)} over {@link #ITERATIONS} calls. */
+  static long bytesPerCall(IntFunction<Object> op) {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "no per-thread allocation counter");
+    com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+    Assumptions.assumeTrue(mx.isThreadAllocatedMemorySupported() && mx.isThreadAllocatedMemoryEnabled(), "allocation counter disabled");
+    long tid = Thread.currentThread().threadId();
+    for (int i = 0; i < WARMUP; i++) sink = op.apply(i);
+    long before = mx.getThreadAllocatedBytes(tid);
+    for (int i = 0; i < ITERATIONS; i++) sink = op.apply(i);
+    long after = mx.getThreadAllocatedBytes(tid);
+    return (after - before) / ITERATIONS;
+  }
+
+  private static void assertWithin(long budget, long measured, String what) {
+    assertTrue(measured <= budget, what + " allocates " + measured + " B/call, budget is " + budget);
+  }
+
+  @Test
+  void parserFromPresentationText() {
+    assertWithin(PARSE_STRING_BUDGET, bytesPerCall(i -> Parser.parse(golden.get(i % golden.size()))), "Parser.parse(String)");
+  }
+
+  @Test
+  void parserFromWireRdata() {
+    assertWithin(PARSE_RDATA_BUDGET, bytesPerCall(i -> Parser.parse(goldenRdata.get(i % goldenRdata.size()))), "Parser.parse(ByteBuffer)");
+  }
+
+  @Test
+  void base58DecodeOfAnEd25519Key() {
+    byte[] key = new byte[32];
+    for (int i = 0; i < key.length; i++) key[i] = (byte) (i * 37 + 11);
+    String encoded = Base58.encode(key);
+    assertArrayEquals(key, Base58.decode(encoded));
+    assertWithin(BASE58_DECODE_BUDGET, bytesPerCall(i -> Base58.decode(encoded)), "Base58.decode");
+  }
+
+  @Test
+  void handshakeSignatureHeaders() {
+    String input = "sig=(\"AID-Challenge\" \"@method\" \"@target-uri\" \"host\" \"date\");created=1767225600;keyid=g1;alg=\"ed25519\"";
+    String signature = "sig=:" + java.util.Base64.getEncoder().encodeToString(new byte[64]) + ":";
+    String date = "Thu, 01 Jan 2026 00:00:00 GMT";
+    assertEquals("g1", Handshake.parseSignatureHeaders(input, signature, date).keyid);
+    assertWithin(SIGNATURE_HEADERS_BUDGET, bytesPerCall(i -> Handshake.parseSignatureHeaders(input, signature, date)), "Handshake.parseSignatureHeaders");
+  }
+}
@@ -0,0 +1,122 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class CompactAidRecordTest {
+  static final String[] RECORDS = {
+    "v=aid1;uri=https://api.example.com/mcp;p=mcp",
+    "v=aid1;uri=docker://myimage;proto=local;desc=Local Docker Agent",
+    "v=aid1;uri=https://api.example.com/mcp;p=mcp;d=https://docs.example.com/agent;e=2099-01-01T00:00:00Z",
+    "v=aid1;uri=https://api.example.com/mcp;p=mcp;k=z7rW8rTq8o4mM6vVf7w1k3m4uQn9p2YxCAbcDeFgHiJ;i=g1",
+    "v=aid1;p=ucp;u=https://shop.example.com/ucp;a=oauth2_code",
+    "v=aid1;uri=wss://ws.example.com/ws;p=websocket;k=z1117rW8;i=k2",
+    "v=aid1;uri=https://api.example.com;p=a2a;k=not-multibase;i=k3",
+  };
+
+  @Test
+  void roundTripsToTheSameAidRecord() {
+    for (String txt : RECORDS) {
+      AidRecord expected = Parser.parse(txt);
+      CompactAidRecord c = CompactAidRecord.of(expected);
+      TxtWireFormatTest.assertSameRecord(expected, c.toAidRecord());
+      assertEquals(expected.proto, c.protocol().token);
+      assertEquals(c, CompactAidRecord.parse(txt));
+      assertEquals(c.hashCode(), CompactAidRecord.parse(txt).hashCode());
+    }
+  }
+
+  @Test
+  void storesTypedFields() {
+    byte[] key = new byte[32];
+    java.util.Arrays.fill(key, (byte) 0x5a);
+    String pka = "z" + Base58.encode(key);
+    CompactAidRecord c = CompactAidRecord.parse(
+        "v=aid1;uri=https://api.example.com/mcp;p=mcp;a=pat;e=2099-01-01T00:00:00.250Z;k=" + pka + ";i=g1");
+    assertEquals(Proto.MCP, c.protocol());
+    assertEquals(Auth.PAT, c.authScheme());
+    assertEquals(4070908800250L, c.depEpochMillis());
+    assertEquals("2099-01-01T00:00:00.250Z", c.dep());
+    assertArrayEquals(key, c.pkaKey());
+    assertEquals(pka, c.pka());
+    for (String other : new String[] {"z1", "z11A", "zX", "zl0"}) {
+      assertEquals(other, CompactAidRecord.parse("v=aid1;uri=https://a.example.com;p=mcp;i=g1;k=" + other).pka());
+    }
+    assertSame(CompactAidRecord.parse("v=aid1;uri=https://a.example.com;p=mcp;i=g1;k=zX").kid(), c.kid());
+    assertEquals(CompactAidRecord.NO_DEP, CompactAidRecord.parse(RECORDS[0]).depEpochMillis());
+  }
+
+  @Test
+  void enumsCoverGeneratedConstants() throws Exception {
+    Set<String> protos = new HashSet<>();
+    Set<String> auths = new HashSet<>();
+    for (Field f : Constants.class.getFields()) {
+      if (!Modifier.isStatic(f.getModifiers()) || f.getType() != String.class) continue;
+      if (f.getName().startsWith("PROTO_")) protos.add((String) f.get(null));
+      if (f.getName().startsWith("AUTH_")) auths.add((String) f.get(null));
+    }
+    Set<String> protoTokens = new HashSet<>();
+    for (Proto p : Proto.values()) protoTokens.add(p.token);
+    Set<String> authTokens = new HashSet<>();
+    for (Auth a : Auth.values()) authTokens.add(a.token);
+    assertEquals(protos, protoTokens);
+    assertEquals(auths, authTokens);
+  }
+
+  @Test
+  void base58RoundTrips() {
+    Random rnd = new Random(58);
+    for (int i = 0; i < 2000; i++) {
+      byte[] b = new byte[rnd.nextInt(40)];
+      rnd.nextBytes(b);
+      for (int z = rnd.nextInt(4); z > 0 && z <= b.length; z--) b[z - 1] = 0;
+      assertArrayEquals(b, Base58.decode(Base58.encode(b)));
+    }
+    assertEquals("7rW8rTq8o4mM6vVf7w1k3m4uQn9p2YxCAbcDeFgHiJ",
+        Base58.encode(Base58.decode("7rW8rTq8o4mM6vVf7w1k3m4uQn9p2YxCAbcDeFgHiJ")));
+  }
+
+  @Test
+  void internTableIsBounded() {
+    String a = CompactAidRecord.intern(new String("Shared description"));
+    assertSame(a, CompactAidRecord.intern(new String("Shared description")));
+    for (int i = 0; i < 40_000; i++) CompactAidRecord.intern("attacker-" + i);
+    assertTrue(CompactAidRecord.internedCount() <= 16_384, "interned: " + CompactAidRecord.internedCount());
+    String b = CompactAidRecord.intern(new String("Shared after the table filled"));
+    assertSame(b, CompactAidRecord.intern(new String("Shared after the table filled")));
+    String longValue = "x".repeat(1000);
+    assertSame(longValue, CompactAidRecord.intern(longValue));
+  }
+
+  @Test
+  void ownsFewerObjectsPerRecordThanAidRecord() throws Exception {
+    byte[] key = new byte[32];
+    java.util.Arrays.fill(key, (byte) 0x5a);
+    String rest = "/mcp;p=mcp;a=pat;s=Example agent;d=https://docs.example.com/agent;k=z" + Base58.encode(key)
+        + ";i=g1;e=2099-01-01T00:00:00Z";
+    String a = "v=aid1;uri=https://agent1.example.com" + rest;
+    String b = "v=aid1;uri=https://agent2.example.com" + rest;
+    int full = unshared(Parser.parse(a), Parser.parse(b));
+    // Only the uri and the raw key bytes; enums and interned strings are shared between records
+    assertEquals(2, unshared(CompactAidRecord.parse(a), CompactAidRecord.parse(b)));
+    assertTrue(full >= 8, "AidRecord owns " + full);
+  }
+
+  // Reference fields whose values two records parsed from different texts do not share
+  private static int unshared(Object x, Object y) throws IllegalAccessException {
+    int n = 0;
+    for (java.lang.reflect.Field f : x.getClass().getDeclaredFields()) {
+      if (java.lang.reflect.Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) continue;
+      f.setAccessible(true);
+      Object v = f.get(x);
+      if (v != null && v != f.get(y)) n++;
+    }
+    return n;
+  }
+}
@@ -0,0 +1,90 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DiscoveryOutcomeTest {
+  StubDohServer doh;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(0, 200);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+  }
+
+  private Discovery.DiscoveryOptions options() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.wellKnownFallback = false;
+    opts.timeout = Duration.ofSeconds(5);
+    return opts;
+  }
+
+  @Test
+  void successCarriesResult() {
+    DiscoveryOutcome o = Discovery.tryDiscover("example.com", options());
+    assertTrue(o.isSuccess());
+    assertEquals("example.com", o.domain);
+    assertEquals("https://api.example.com/mcp", o.result.record.uri);
+    assertNull(o.errorCode());
+    assertNull(o.message());
+  }
+
+  @Test
+  void missingRecordIsReturnedWithoutStackTrace() {
+    doh.txt = null;
+    Discovery.DiscoveryOptions opts = options();
+    opts.protocol = "mcp";
+    DiscoveryOutcome o = Discovery.tryDiscover("example.com", opts);
+    assertFalse(o.isSuccess());
+    assertEquals("ERR_NO_RECORD", o.errorCode());
+    assertEquals(Constants.ERR_NO_RECORD, o.error.code);
+    assertTrue(o.message().contains("_agent.example.com"), o.message());
+    assertEquals(0, o.error.getStackTrace().length);
+    assertEquals(3, doh.hits.get());
+  }
+
+  @Test
+  void invalidAnswersAreStackless() {
+    doh.answers = List.of("v=aid1;p=mcp", "v=aid2;u=https://a.example;p=mcp");
+    DiscoveryOutcome o = Discovery.tryDiscover("example.com", options());
+    assertEquals("ERR_INVALID_TXT", o.errorCode());
+    assertEquals(0, o.error.getStackTrace().length);
+
+    AidError e = assertThrows(AidError.class, () -> Parser.parse("v=aid1;p=mcp"));
+    assertEquals(0, e.getStackTrace().length);
+    e.addSuppressed(new RuntimeException("ignored"));
+    assertEquals(0, e.getSuppressed().length);
+  }
+
+  @Test
+  void pkaOnNonHttpUriIsASecurityError() {
+    doh.txt = "v=aid1;p=websocket;u=wss://agent.example.com/ws;k=z" + Base58.encode(new byte[32]) + ";i=g1";
+    Discovery.DiscoveryOptions opts = options();
+    DiscoveryOutcome o = Discovery.tryDiscover("example.com", opts);
+    assertEquals("ERR_SECURITY", o.errorCode());
+    assertTrue(o.message().contains("wss://agent.example.com/ws"), o.message());
+
+    opts.parallelHandshakes = true;
+    doh.answers = List.of(doh.txt, doh.txt);
+    assertEquals("ERR_SECURITY", Discovery.tryDiscover("example.com", opts).errorCode());
+  }
+
+  @Test
+  void throwingApiReportsTheSameError() {
+    doh.txt = null;
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover("example.com", options()));
+    DiscoveryOutcome o = Discovery.tryDiscover("example.com", options());
+    assertEquals(o.errorCode(), e.errorCode);
+    assertEquals(o.message(), e.getMessage());
+  }
+}
@@ -0,0 +1,133 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DiscoveryPublisherTest {
+  StubDohServer doh;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(30, 200);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+  }
+
+  private Discovery.DiscoveryOptions options() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.wellKnownFallback = false;
+    opts.timeout = Duration.ofSeconds(5);
+    return opts;
+  }
+
+  private static List<String> domains(int n) {
+    List<String> out = new ArrayList<>();
+    for (int i = 0; i < n; i++) out.add("d" + i + ".example.com");
+    return out;
+  }
+
+  /** Requests {@code initial} up front, then one more per outcome when {@code refill} is set. */
+  static final class Collector implements Flow.Subscriber<DiscoveryOutcome> {
+    final Set<String> domains = ConcurrentHashMap.newKeySet();
+    final List<DiscoveryOutcome> outcomes = java.util.Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch finished = new CountDownLatch(1);
+    final long initial;
+    final boolean refill;
+    volatile Throwable error;
+    Flow.Subscription subscription;
+
+    Collector(long initial, boolean refill) { this.initial = initial; this.refill = refill; }
+
+    public void onSubscribe(Flow.Subscription s) { subscription = s; s.request(initial); }
+    public void onNext(DiscoveryOutcome o) {
+      outcomes.add(o);
+      domains.add(o.domain);
+      if (refill) subscription.request(1);
+    }
+    public void onError(Throwable t) { error = t; finished.countDown(); }
+    public void onComplete() { finished.countDown(); }
+  }
+
+  @Test
+  void boundsInFlightLookupsAndEmitsEveryDomain() throws Exception {
+    Collector c = new Collector(8, true);
+    new DiscoveryPublisher(domains(40).iterator(), options(), 4).subscribe(c);
+
+    assertTrue(c.finished.await(30, TimeUnit.SECONDS));
+    assertNull(c.error);
+    assertEquals(new HashSet<>(domains(40)), c.domains);
+    assertEquals(40, c.outcomes.size());
+    for (DiscoveryOutcome o : c.outcomes) {
+      assertTrue(o.isSuccess(), o.domain);
+      assertEquals("_agent." + o.domain, o.result.queryName);
+    }
+    assertTrue(doh.maxActive.get() <= 4, "max concurrent lookups " + doh.maxActive.get());
+  }
+
+  @Test
+  void startsNoMoreLookupsThanRequested() throws Exception {
+    Collector c = new Collector(2, false);
+    new DiscoveryPublisher(domains(50).iterator(), options(), 8).subscribe(c);
+
+    Thread.sleep(1000);
+    assertEquals(2, c.outcomes.size());
+    assertEquals(2, doh.hits.get());
+    c.subscription.cancel();
+  }
+
+  @Test
+  void consumesDomainsFromAFlowPublisher() throws Exception {
+    Collector c = new Collector(Long.MAX_VALUE, false);
+    try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+      new DiscoveryPublisher(source, options(), 3).subscribe(c);
+      for (String d : domains(20)) source.submit(d);
+    }
+    assertTrue(c.finished.await(30, TimeUnit.SECONDS));
+    assertNull(c.error);
+    assertEquals(new HashSet<>(domains(20)), c.domains);
+    assertTrue(doh.maxActive.get() <= 3, "max concurrent lookups " + doh.maxActive.get());
+  }
+
+  @Test
+  void reportsFailuresAsOutcomes() throws Exception {
+    doh.status = 503;
+    Collector c = new Collector(Long.MAX_VALUE, false);
+    new DiscoveryPublisher(domains(3).iterator(), options(), 2).subscribe(c);
+
+    assertTrue(c.finished.await(30, TimeUnit.SECONDS));
+    assertEquals(3, c.outcomes.size());
+    for (DiscoveryOutcome o : c.outcomes) {
+      assertFalse(o.isSuccess());
+      assertEquals("ERR_DNS_LOOKUP_FAILED", o.error.errorCode);
+    }
+  }
+
+  @Test
+  void unexpectedLookupExceptionsReachOnError() throws Exception {
+    Discovery.DiscoveryOptions opts = options();
+    opts.httpClient = java.net.http.HttpClient.newBuilder().followRedirects(java.net.http.HttpClient.Redirect.NORMAL).build();
+    Collector c = new Collector(Long.MAX_VALUE, false);
+    new DiscoveryPublisher(domains(3).iterator(), opts, 2).subscribe(c);
+
+    assertTrue(c.finished.await(30, TimeUnit.SECONDS));
+    assertTrue(c.error instanceof IllegalArgumentException, String.valueOf(c.error));
+    assertTrue(c.outcomes.isEmpty());
+  }
+}
@@ -0,0 +1,134 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DiscoverySidecarTest {
+  StubDohServer doh;
+  DiscoverySidecar sidecar;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(200, 200);
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.wellKnownFallback = false;
+    sidecar = new DiscoverySidecar(new InetSocketAddress("127.0.0.1", 0), opts).start();
+  }
+
+  @AfterEach
+  void stop() {
+    sidecar.close();
+    doh.close();
+  }
+
+  private Discovery.DiscoveryOptions clientOptions() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.sidecar = sidecar.uri();
+    opts.dohEndpoints = List.of("http://127.0.0.1:9/unused");
+    return opts;
+  }
+
+  @Test
+  void concurrentClientsShareOneResolution() {
+    List<CompletableFuture<Discovery.DiscoveryResult>> all = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      all.add(CompletableFuture.supplyAsync(() -> Discovery.discover("example.com", clientOptions())));
+    }
+    for (CompletableFuture<Discovery.DiscoveryResult> f : all) {
+      Discovery.DiscoveryResult r = f.join();
+      assertEquals("https://api.example.com/mcp", r.record.uri);
+      assertEquals(321, r.ttl);
+      assertEquals("_agent.example.com", r.queryName);
+    }
+    assertEquals(1, doh.hits.get());
+
+    // Served from the sidecar's cache from now on
+    Discovery.discover("example.com", clientOptions());
+    assertEquals(1, doh.hits.get());
+  }
+
+  @Test
+  void errorsKeepTheirCode() {
+    doh.txt = null;
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover("missing.example.com", clientOptions()));
+    assertEquals("ERR_NO_RECORD", e.errorCode);
+  }
+
+  @Test
+  void servesJsonAndBinary() throws Exception {
+    HttpClient http = HttpClient.newHttpClient();
+    HttpResponse<String> json = http.send(HttpRequest.newBuilder(URI.create(sidecar.uri() + "/discover?domain=example.com&protocol=mcp")).build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, json.statusCode());
+    assertEquals("{\"ttl\":321,\"queryName\":\"_agent._mcp.example.com\",\"record\":{\"v\":\"aid1\",\"uri\":\"https://api.example.com/mcp\",\"proto\":\"mcp\"}}", json.body());
+
+    HttpResponse<byte[]> bin = http.send(HttpRequest.newBuilder(URI.create(sidecar.uri() + "/discover?domain=example.com&protocol=mcp"))
+        .header("Accept", RecordCodec.CONTENT_TYPE).build(), HttpResponse.BodyHandlers.ofByteArray());
+    Discovery.DiscoveryResult r = RecordCodec.decode(ByteBuffer.wrap(bin.body()));
+    assertEquals("_agent._mcp.example.com", r.queryName);
+    assertEquals("mcp", r.record.proto);
+    assertNull(r.record.pka);
+
+    HttpResponse<String> bad = http.send(HttpRequest.newBuilder(URI.create(sidecar.uri() + "/discover")).build(), HttpResponse.BodyHandlers.ofString());
+    assertEquals(400, bad.statusCode());
+  }
+
+  @Test
+  void unreachableSidecarFallsBackToLocalResolution() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.sidecar = URI.create("http://127.0.0.1:9");
+    opts.dohEndpoints = List.of(doh.url());
+    opts.timeout = Duration.ofSeconds(5);
+    assertEquals("https://api.example.com/mcp", Discovery.discover("example.com", opts).record.uri);
+  }
+
+  @Test
+  void stricterOptionsBypassTheSidecar() {
+    Discovery.DiscoveryOptions opts = clientOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.requireDnssec = true;
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover("example.com", opts));
+    assertEquals("ERR_SECURITY", e.errorCode); // the stub never sets AD
+    assertEquals(0, sidecar.resolutions.get());
+  }
+
+  @Test
+  void slowSidecarFailsWithinTheDeadlineWithoutResolvingAgain() throws Exception {
+    // Accepts connections into the backlog but never answers
+    try (java.net.ServerSocket silent = new java.net.ServerSocket(0, 50, java.net.InetAddress.getLoopbackAddress())) {
+      Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+      opts.sidecar = URI.create("http://127.0.0.1:" + silent.getLocalPort());
+      opts.dohEndpoints = List.of(doh.url());
+      opts.deadline = Duration.ofMillis(300);
+      long start = System.nanoTime();
+      AidError e = assertThrows(AidError.class, () -> Discovery.discover("example.com", opts));
+      assertEquals("ERR_DNS_LOOKUP_FAILED", e.errorCode);
+      assertTrue(System.nanoTime() - start < java.util.concurrent.TimeUnit.SECONDS.toNanos(3));
+      assertEquals(0, doh.hits.get());
+    }
+  }
+
+  @Test
+  void binaryCodecRoundTripsAllFields() {
+    AidRecord rec = new AidRecord("aid1", "https://a.example/mcp", "mcp", "pat", "Désc \"q\"", "https://docs.example", "2026-01-01T00:00:00Z", "zKey", "g1");
+    Discovery.DiscoveryResult r = RecordCodec.decode(ByteBuffer.wrap(RecordCodec.encode(new Discovery.DiscoveryResult(rec, 600, "_agent.a.example"))));
+    TxtWireFormatTest.assertSameRecord(rec, r.record);
+    assertEquals(600, r.ttl);
+    assertEquals("_agent.a.example", r.queryName);
+    assertThrows(IllegalArgumentException.class, () -> RecordCodec.decode(ByteBuffer.wrap(new byte[] {1, 0, 0})));
+  }
+}
@@ -0,0 +1,140 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DiscoveryWatchTest {
+  StubDohServer doh;
+  StubAgentServer agent;
+  final LinkedBlockingQueue<DiscoveryWatch.Event> events = new LinkedBlockingQueue<>();
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(0, 200);
+    agent = new StubAgentServer(0);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+    agent.close();
+  }
+
+  private Discovery.DiscoveryOptions options() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.httpClient = agent.httpClient();
+    opts.wellKnownFallback = false;
+    opts.timeout = Duration.ofSeconds(5);
+    opts.cache = new InMemoryDiscoveryCache(); // ignored by the watch
+    return opts;
+  }
+
+  // Refreshes every 0.8-1 s whatever the TTL
+  private DiscoveryWatch watch(int maxConcurrency) {
+    return watch(options(), maxConcurrency);
+  }
+
+  private DiscoveryWatch watch(Discovery.DiscoveryOptions opts, int maxConcurrency) {
+    return new DiscoveryWatch(List.of(agent.authority()), events::add, opts, maxConcurrency,
+        Duration.ofSeconds(1), Duration.ofSeconds(1));
+  }
+
+  private DiscoveryWatch.Event next() throws InterruptedException {
+    DiscoveryWatch.Event e = events.poll(5, TimeUnit.SECONDS);
+    assertNotNull(e, "expected an event");
+    return e;
+  }
+
+  @Test
+  void reportsAddedChangedDeprecatedAndRemoved() throws Exception {
+    doh.txt = agent.txtRecord();
+    try (DiscoveryWatch watch = watch(16)) {
+      DiscoveryWatch.Event added = next();
+      assertEquals(DiscoveryWatch.EventType.ADDED, added.type);
+      assertEquals(agent.authority(), added.domain);
+      assertNull(added.previous);
+      assertEquals(java.util.Set.of(agent.authority()), watch.domains());
+
+      doh.txt = agent.txtRecord() + ";s=v2";
+      DiscoveryWatch.Event changed = next();
+      assertEquals(DiscoveryWatch.EventType.CHANGED, changed.type);
+      assertNull(changed.previous.desc);
+      assertEquals("v2", changed.current.desc);
+
+      doh.txt = agent.txtRecord() + ";s=v2;e=2030-01-01T00:00:00Z";
+      DiscoveryWatch.Event deprecated = next();
+      assertEquals(DiscoveryWatch.EventType.DEPRECATED, deprecated.type);
+      assertEquals("2030-01-01T00:00:00Z", deprecated.current.dep);
+
+      doh.txt = null;
+      DiscoveryWatch.Event removed = next();
+      assertEquals(DiscoveryWatch.EventType.REMOVED, removed.type);
+      assertNull(removed.current);
+      assertEquals("ERR_NO_RECORD", removed.error.errorCode);
+    }
+  }
+
+  @Test
+  void failingFallbackKeepsTheRecordUntilItIsGone() throws Exception {
+    doh.txt = null;
+    Discovery.DiscoveryOptions opts = options();
+    opts.wellKnownFallback = true;
+    opts.wellKnownTimeout = Duration.ofSeconds(5);
+    try (DiscoveryWatch watch = watch(opts, 2)) {
+      assertEquals(DiscoveryWatch.EventType.ADDED, next().type);
+
+      agent.wellKnownStatus = 503;
+      Thread.sleep(2200);
+      assertTrue(events.isEmpty(), "a failing fallback is not a removal: " + events);
+
+      agent.wellKnownStatus = 404;
+      DiscoveryWatch.Event removed = next();
+      assertEquals(DiscoveryWatch.EventType.REMOVED, removed.type);
+      assertEquals("ERR_FALLBACK_FAILED", removed.error.errorCode);
+      assertEquals(1, watch.domains().size());
+    }
+  }
+
+  @Test
+  void shortTtlsAreClampedAndTheFirstResolutionIsOneQuery() throws Exception {
+    doh.txt = agent.txtRecord();
+    doh.ttl = 1;
+    try (DiscoveryWatch watch = Discovery.watch(List.of(agent.authority()), events::add, options())) {
+      assertEquals(DiscoveryWatch.EventType.ADDED, next().type);
+      Thread.sleep(1500);
+      assertEquals(1, doh.hits.get(), "a 1 s TTL must not be refreshed before DNS_TTL_MIN");
+      assertEquals(1, watch.domains().size());
+    }
+  }
+
+  @Test
+  void unchangedRecordIsNotReverifiedAndDnsFailuresAreNotRemovals() throws Exception {
+    doh.txt = agent.txtRecord();
+    try (DiscoveryWatch watch = watch(2)) {
+      assertEquals(DiscoveryWatch.EventType.ADDED, next().type);
+      int handshakes = agent.handshakes.get();
+      int hits = doh.hits.get();
+
+      doh.status = 503;
+      Thread.sleep(2200);
+      doh.status = 200;
+      Thread.sleep(2200);
+
+      assertTrue(doh.hits.get() >= hits + 2, "refreshes should keep running: " + (doh.hits.get() - hits));
+      assertEquals(handshakes, agent.handshakes.get(), "an unchanged TXT must not repeat the handshake");
+      assertTrue(events.isEmpty(), "unexpected " + events);
+      assertEquals(java.util.Set.of(agent.authority()), watch.domains());
+
+      watch.remove(agent.authority());
+      assertTrue(watch.domains().isEmpty());
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class DohClientTest {
+  final List<StubDohServer> servers = new ArrayList<>();
+
+  @AfterEach
+  void stop() {
+    for (StubDohServer s : servers) s.close();
+  }
+
+  private StubDohServer stub(long delayMs, int status) throws Exception {
+    StubDohServer s = new StubDohServer(delayMs, status);
+    servers.add(s);
+    return s;
+  }
+
+  private static Discovery.DiscoveryOptions options(StubDohServer... endpoints) {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    List<String> urls = new ArrayList<>();
+    for (StubDohServer s : endpoints) urls.add(s.url());
+    opts.dohEndpoints = urls;
+    opts.wellKnownFallback = false;
+    opts.timeout = Duration.ofSeconds(5);
+    return opts;
+  }
+
+  @Test
+  void hedgesToSecondEndpointWhenPrimaryIsSlow() throws Exception {
+    StubDohServer slow = stub(3000, 200);
+    StubDohServer fast = stub(0, 200);
+
+    long start = System.nanoTime();
+    Discovery.DiscoveryResult r = Discovery.discover("example.com", options(slow, fast));
+    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals("https://api.example.com/mcp", r.record.uri);
+    assertEquals(321, r.ttl);
+    assertTrue(elapsedMs < 2500, "hedged answer should beat the slow primary, took " + elapsedMs + "ms");
+    assertEquals(1, fast.hits.get());
+  }
+
+  @Test
+  void endpointThatAlwaysLosesTheHedgeStopsBeingPrimary() throws Exception {
+    StubDohServer slow = stub(400, 200);
+    StubDohServer fast = stub(0, 200);
+
+    for (int i = 0; i < 4; i++) {
+      assertNotNull(Discovery.discover("example.com", options(slow, fast)).record);
+    }
+    assertEquals(fast.url(), DohClient.rank(List.of(slow.url(), fast.url())).get(0).url);
+    assertEquals(1, slow.hits.get(), "only the first query should go to the slow endpoint");
+  }
+
+  @Test
+  void failsOverImmediatelyOnErrorAndPrefersHealthyEndpoint() throws Exception {
+    StubDohServer bad = stub(0, 503);
+    StubDohServer good = stub(20, 200);
+
+    for (int i = 0; i < 5; i++) {
+      assertNotNull(Discovery.discover("example.com", options(bad, good)).record);
+    }
+    assertTrue(DohClient.stats(bad.url()).errorScore() > DohClient.stats(good.url()).errorScore());
+    assertEquals(good.url(), DohClient.rank(List.of(bad.url(), good.url())).get(0).url);
+    assertTrue(bad.hits.get() < 5, "unhealthy endpoint should stop being primary");
+  }
+
+  @Test
+  void reportsLastErrorWhenAllEndpointsFail() throws Exception {
+    StubDohServer a = stub(0, 429);
+    StubDohServer b = stub(0, 429);
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover("example.com", options(a, b)));
+    assertEquals("ERR_DNS_LOOKUP_FAILED", e.errorCode);
+    assertEquals("DoH HTTP 429", e.getMessage());
+  }
+
+  @Test
+  void deadlineBoundsTheWholeChain() throws Exception {
+    Discovery.DiscoveryOptions opts = options(stub(3000, 200));
+    opts.protocol = "mcp";
+    opts.wellKnownFallback = true;
+    opts.deadline = Duration.ofMillis(300);
+
+    long start = System.nanoTime();
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover("example.com", opts));
+    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals("ERR_DNS_LOOKUP_FAILED", e.errorCode);
+    assertTrue(e.getMessage().startsWith("Discovery deadline of 300ms exceeded"), e.getMessage());
+    assertTrue(elapsedMs < 1500, "chain should stop at the deadline, took " + elapsedMs + "ms");
+  }
+
+  @Test
+  void rejectsAClientThatFollowsRedirects() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.httpClient = java.net.http.HttpClient.newBuilder().followRedirects(java.net.http.HttpClient.Redirect.NORMAL).build();
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Discovery.tryDiscover("example.com", opts));
+    assertTrue(e.getMessage().contains("Redirect.NEVER"), e.getMessage());
+  }
+}
@@ -0,0 +1,158 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** The built-in JSON reader must accept, reject and coerce exactly what Jackson databinding did. */
+public class JsonParityTest {
+  static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class JacksonDoH {
+    @JsonProperty("Status") public int status;
+    @JsonProperty("AD") public boolean ad;
+    @JsonProperty("Answer") public List<JacksonAnswer> answer;
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class JacksonAnswer {
+    @JsonProperty("data") public String data;
+    @JsonProperty("TTL") public int ttl;
+  }
+
+  static final String[] DOH = {
+    "{\"Status\":0,\"TC\":false,\"RD\":true,\"RA\":true,\"AD\":true,\"CD\":false,\"Question\":[{\"name\":\"_agent.example.com.\",\"type\":16}],"
+        + "\"Answer\":[{\"name\":\"_agent.example.com.\",\"type\":16,\"TTL\":300,\"data\":\"\\\"v=aid1;u=https://a.example/mcp;p=mcp\\\"\"}]}",
+    "{\"Status\":3,\"AD\":false,\"Authority\":[{\"name\":\"example.com.\",\"type\":6,\"TTL\":1800,\"data\":\"ns. admin. 1 2 3 4 5\"}]}",
+    "{\"Status\":0,\"AD\":false,\"Answer\":[]}",
+    "{\"Status\":0,\"Answer\":[{\"data\":\"\\\"a\\\" \\\"b\\u00e9\\\"\",\"TTL\":60},{\"data\":\"x\",\"TTL\":1.9}]}",
+    "{\"Status\":\"0\",\"AD\":1,\"Answer\":[{\"data\":12,\"TTL\":\"7\"}]}",
+    "{\"Status\":0,\"Status\":2}",
+    "{\"Status\":null,\"AD\":null,\"Answer\":null}",
+    "{\"Status\":0,\"Answer\":[{\"data\":true,\"TTL\":-5,\"extra\":{\"nested\":[1,2,{\"x\":null}]}}]} trailing",
+    "  \n{\"Status\":0}",
+  };
+
+  static final String[] BAD = {
+    "", "   ", "[]", "\"str\"", "{", "{\"Status\":}", "{\"Status\":01}", "{\"Status\":0,}", "{'Status':0}",
+    "{\"Status\":99999999999}", "{\"Status\":true}", "{\"Answer\":{}}", "{\"Answer\":[1]}", "{\"Answer\":[{\"data\":{}}]}",
+    "{\"Answer\":[{\"data\":\"a\nb\"}]}", "{\"Answer\":[{\"data\":\"\\x\"}]}", "{\"Status\":-}", "{\"Status\":1.}", "{\"AD\":\"maybe\"}",
+    "{\"Status\":NaN}", "{\"Status\":0 \"AD\":true}", "{\"Answer\":[{\"data\":\"\\u12G4\"}]}", "/* c */ {}",
+  };
+
+  static final String[] WELL_KNOWN = {
+    "{\"v\":\"aid1\",\"u\":\"https://a.example/mcp\",\"p\":\"mcp\",\"k\":\"zKey\",\"i\":\"g1\"}",
+    "{\"v\":\"aid1\",\"uri\":\"https://a.example/mcp\",\"proto\":\"mcp\",\"desc\":\"Caf\\u00e9 \\\"agent\\\"\\n\",\"docs\":null}",
+    "{\"v\":1,\"n\":1.50,\"e\":1E+2,\"neg\":-0.0,\"b\":false,\"t\":true}",
+    "{}",
+    "{\"a\":\"1\",\"a\":\"2\"}",
+    "{\"v\":\"aid1\"}  {\"ignored\":true}",
+  };
+
+  static final String[] WELL_KNOWN_BAD = {
+    "[]", "{\"u\":[\"x\"]}", "{\"u\":{\"x\":\"y\"}}", "null", "{\"u\":\"x\"", "{\"u\" \"x\"}", "",
+  };
+
+  private static String jacksonDoH(String json) {
+    try {
+      JacksonDoH d = MAPPER.readValue(json, JacksonDoH.class);
+      StringBuilder sb = new StringBuilder().append(d.status).append('|').append(d.ad).append('|');
+      if (d.answer == null) return sb.append("null").toString();
+      for (JacksonAnswer a : d.answer) {
+        if (a == null) return "error";
+        sb.append('[').append(a.data).append(',').append(a.ttl).append(']');
+      }
+      return sb.toString();
+    } catch (Exception e) {
+      return "error";
+    }
+  }
+
+  private static String builtinDoH(String json) {
+    try {
+      Discovery.DoHResponse d = Discovery.DoHResponse.parse(json);
+      StringBuilder sb = new StringBuilder().append(d.status).append('|').append(d.ad).append('|');
+      if (d.answer == null) return sb.append("null").toString();
+      for (Discovery.DoHAnswer a : d.answer) sb.append('[').append(a.data).append(',').append(a.ttl).append(']');
+      return sb.toString();
+    } catch (Json.JsonException e) {
+      return "error";
+    }
+  }
+
+  private static Map<String, String> jacksonMap(String json) {
+    try {
+      return MAPPER.readValue(json, new TypeReference<HashMap<String, String>>() {});
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static Map<String, String> builtinMap(String json) {
+    try {
+      return Json.parseStringMap(json);
+    } catch (Json.JsonException e) {
+      return null;
+    }
+  }
+
+  @Test
+  void dohResponsesMatchJackson() {
+    for (String json : DOH) {
+      assertNotEquals("error", jacksonDoH(json), json);
+      assertEquals(jacksonDoH(json), builtinDoH(json), json);
+    }
+    for (String json : BAD) {
+      assertEquals("error", jacksonDoH(json), json);
+      assertEquals("error", builtinDoH(json), json);
+    }
+  }
+
+  @Test
+  void wellKnownDocumentsMatchJackson() {
+    for (String json : WELL_KNOWN) {
+      assertNotNull(jacksonMap(json), json);
+      assertEquals(jacksonMap(json), builtinMap(json), json);
+    }
+    for (String json : WELL_KNOWN_BAD) {
+      assertNull(jacksonMap(json), json);
+      assertNull(builtinMap(json), json);
+    }
+  }
+
+  @Test
+  void mutatedDocumentsMatchJackson() {
+    Random rnd = new Random(7);
+    String alphabet = "{}[]\":,\\ 0123456789.-eEtrufalsn\u00e9";
+    List<String> seeds = new ArrayList<>(List.of(DOH));
+    seeds.addAll(List.of(WELL_KNOWN));
+    int checked = 0;
+    for (int i = 0; i < 20_000; i++) {
+      StringBuilder sb = new StringBuilder(seeds.get(rnd.nextInt(seeds.size())));
+      for (int m = 1 + rnd.nextInt(3); m > 0 && sb.length() > 0; m--) {
+        int at = rnd.nextInt(sb.length());
+        switch (rnd.nextInt(3)) {
+          case 0: sb.deleteCharAt(at); break;
+          case 1: sb.insert(at, alphabet.charAt(rnd.nextInt(alphabet.length()))); break;
+          default: sb.setCharAt(at, alphabet.charAt(rnd.nextInt(alphabet.length())));
+        }
+      }
+      String json = sb.toString();
+      assertEquals(jacksonDoH(json), builtinDoH(json), json);
+      assertTrue(Objects.equals(jacksonMap(json), builtinMap(json)), json);
+      checked++;
+    }
+    assertEquals(20_000, checked);
+  }
+}
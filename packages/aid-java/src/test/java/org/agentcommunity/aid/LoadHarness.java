@@ -0,0 +1,173 @@
+package org.agentcommunity.aid;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline macro load test for {@link Discovery#discover}: stub DoH endpoint, stub HTTPS agent
+ * (well-known document + Ed25519 handshake), N concurrent discoverers for a fixed duration.
+ * Reports throughput and p50/p99/p999 latency per phase.
+ *
+ * <p>Run with {@code ./gradlew :aid-java:loadTest -Pargs="--concurrency=32 --seconds=30"}. Flags:
+ * {@code --concurrency --seconds --mode=dns|wellknown --doh-latency-ms --agent-latency-ms
+ * --doh-error-rate --agent-error-rate --ttl}.
+ */
+public final class LoadHarness {
+  static final class Config {
+    int concurrency = 16;
+    Duration duration = Duration.ofSeconds(10);
+    String mode = "dns"; // dns: TXT record + handshake; wellknown: empty DNS answer + fallback + handshake
+    long dohLatencyMs = 1;
+    long agentLatencyMs = 1;
+    double dohErrorRate = 0;
+    double agentErrorRate = 0;
+    int ttl = 300;
+
+    static Config fromArgs(String[] args) {
+      Config c = new Config();
+      for (String a : args) {
+        String[] kv = a.replaceFirst("^--", "").split("=", 2);
+        String v = kv.length > 1 ? kv[1] : "";
+        switch (kv[0]) {
+          case "concurrency": c.concurrency = Integer.parseInt(v); break;
+          case "seconds": c.duration = Duration.ofSeconds(Long.parseLong(v)); break;
+          case "mode": c.mode = v; break;
+          case "doh-latency-ms": c.dohLatencyMs = Long.parseLong(v); break;
+          case "agent-latency-ms": c.agentLatencyMs = Long.parseLong(v); break;
+          case "doh-error-rate": c.dohErrorRate = Double.parseDouble(v); break;
+          case "agent-error-rate": c.agentErrorRate = Double.parseDouble(v); break;
+          case "ttl": c.ttl = Integer.parseInt(v); break;
+          default: throw new IllegalArgumentException("Unknown flag: " + a);
+        }
+      }
+      return c;
+    }
+  }
+
+  /** Latency samples for one phase, in nanoseconds. */
+  static final class PhaseStats {
+    private long[] samples = new long[1024];
+    private int count;
+    long errors;
+
+    synchronized void add(long nanos, boolean error) {
+      if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+      samples[count++] = nanos;
+      if (error) errors++;
+    }
+
+    synchronized int count() { return count; }
+
+    synchronized double percentileMillis(double p) {
+      if (count == 0) return 0;
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      int idx = (int) Math.ceil(p * count) - 1;
+      return sorted[Math.max(0, Math.min(count - 1, idx))] / 1_000_000.0;
+    }
+  }
+
+  static final class Report {
+    final Map<String, PhaseStats> phases = new LinkedHashMap<>();
+    long successes;
+    long failures;
+    double seconds;
+    final Map<String, Long> errorCodes = new LinkedHashMap<>();
+
+    double throughput() { return (successes + failures) / seconds; }
+
+    synchronized void outcome(AidError error) {
+      if (error == null) {
+        successes++;
+      } else {
+        failures++;
+        errorCodes.merge(error.errorCode, 1L, Long::sum);
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format(Locale.ROOT, "discoveries=%d ok=%d failed=%d seconds=%.1f throughput=%.1f/s%n",
+          successes + failures, successes, failures, seconds, throughput()));
+      if (!errorCodes.isEmpty()) sb.append("errors=").append(errorCodes).append('\n');
+      sb.append(String.format(Locale.ROOT, "%-10s %9s %7s %9s %9s %9s%n", "phase", "count", "errors", "p50(ms)", "p99(ms)", "p999(ms)"));
+      for (Map.Entry<String, PhaseStats> e : phases.entrySet()) {
+        PhaseStats s = e.getValue();
+        sb.append(String.format(Locale.ROOT, "%-10s %9d %7d %9.2f %9.2f %9.2f%n", e.getKey(), s.count(), s.errors,
+            s.percentileMillis(0.50), s.percentileMillis(0.99), s.percentileMillis(0.999)));
+      }
+      return sb.toString();
+    }
+  }
+
+  static Report run(Config cfg) throws Exception {
+    try (StubDohServer doh = new StubDohServer(cfg.dohLatencyMs, 200);
+        StubAgentServer agent = new StubAgentServer(cfg.agentLatencyMs)) {
+      doh.ttl = cfg.ttl;
+      doh.errorRate = cfg.dohErrorRate;
+      doh.txt = "wellknown".equals(cfg.mode) ? null : agent.txtRecord();
+      agent.errorRate = cfg.agentErrorRate;
+
+      Report report = new Report();
+      for (String phase : new String[] {"total", Discovery.PhaseListener.DNS, Discovery.PhaseListener.HANDSHAKE, Discovery.PhaseListener.WELL_KNOWN}) {
+        report.phases.put(phase, new PhaseStats());
+      }
+      Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+      opts.dohEndpoints = List.of(doh.url());
+      opts.httpClient = agent.httpClient();
+      opts.timeout = Duration.ofSeconds(5);
+      opts.wellKnownTimeout = Duration.ofSeconds(5);
+      opts.phaseListener = (phase, nanos, error) -> report.phases.get(phase).add(nanos, error != null);
+
+      ExecutorService pool = Executors.newFixedThreadPool(cfg.concurrency);
+      CountDownLatch done = new CountDownLatch(cfg.concurrency);
+      long start = System.nanoTime();
+      long end = start + cfg.duration.toNanos();
+      List<Throwable> crashes = new ArrayList<>();
+      for (int i = 0; i < cfg.concurrency; i++) {
+        pool.execute(() -> {
+          try {
+            while (System.nanoTime() < end) {
+              long t0 = System.nanoTime();
+              AidError error = null;
+              try {
+                Discovery.discover(agent.authority(), opts);
+              } catch (AidError e) {
+                error = e;
+              }
+              report.phases.get("total").add(System.nanoTime() - t0, error != null);
+              report.outcome(error);
+            }
+          } catch (Throwable t) {
+            synchronized (crashes) { crashes.add(t); }
+          } finally {
+            done.countDown();
+          }
+        });
+      }
+      done.await();
+      report.seconds = (System.nanoTime() - start) / 1e9;
+      pool.shutdown();
+      pool.awaitTermination(5, TimeUnit.SECONDS);
+      if (!crashes.isEmpty()) throw new IllegalStateException("discoverer crashed", crashes.get(0));
+      return report;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config cfg = Config.fromArgs(args);
+    System.out.printf(Locale.ROOT, "mode=%s concurrency=%d duration=%ds doh-latency=%dms agent-latency=%dms%n",
+        cfg.mode, cfg.concurrency, cfg.duration.getSeconds(), cfg.dohLatencyMs, cfg.agentLatencyMs);
+    System.out.print(run(cfg));
+  }
+}
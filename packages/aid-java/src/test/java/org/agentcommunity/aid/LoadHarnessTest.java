@@ -0,0 +1,33 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+/** Short smoke runs of {@link LoadHarness}; the full harness runs via the loadTest Gradle task. */
+public class LoadHarnessTest {
+  @Test
+  void dnsPathDiscoversAndVerifiesAgainstStubs() throws Exception {
+    LoadHarness.Config cfg = new LoadHarness.Config();
+    cfg.concurrency = 4;
+    cfg.duration = Duration.ofSeconds(1);
+    LoadHarness.Report r = LoadHarness.run(cfg);
+
+    assertTrue(r.successes > 0, r.toString());
+    assertEquals(0, r.failures, r.toString());
+    assertEquals(r.phases.get("total").count(), r.phases.get(Discovery.PhaseListener.HANDSHAKE).count(), r.toString());
+    assertEquals(0, r.phases.get(Discovery.PhaseListener.WELL_KNOWN).count());
+  }
+
+  @Test
+  void wellKnownPathFallsBackAndVerifies() throws Exception {
+    LoadHarness.Config cfg = LoadHarness.Config.fromArgs(new String[] {"--mode=wellknown", "--concurrency=2", "--seconds=1"});
+    LoadHarness.Report r = LoadHarness.run(cfg);
+
+    assertTrue(r.successes > 0, r.toString());
+    assertEquals(0, r.failures, r.toString());
+    assertTrue(r.phases.get(Discovery.PhaseListener.WELL_KNOWN).count() > 0, r.toString());
+    assertEquals(0, r.phases.get(Discovery.PhaseListener.HANDSHAKE).count(), r.toString());
+  }
+}
@@ -0,0 +1,126 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class NegativeIndexTest {
+  final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+  private NegativeIndex index(long expected, double fpp) {
+    return new NegativeIndex(expected, fpp, Duration.ofSeconds(300), 4, now::get);
+  }
+
+  @Test
+  void answersAddedDomainsUntilTheTtlRunsOut() {
+    NegativeIndex idx = index(1000, 0.01);
+    idx.add("Example.COM");
+    idx.add("other.org", "mcp");
+
+    assertTrue(idx.mightContain("example.com"));
+    assertTrue(idx.mightContain("other.org", "mcp"));
+    assertFalse(idx.mightContain("other.org"));
+
+    now.addAndGet(299_000);
+    assertTrue(idx.mightContain("example.com"), "still within the TTL");
+    now.addAndGet(76_000);
+    assertFalse(idx.mightContain("example.com"), "expired with its slice");
+  }
+
+  @Test
+  void falsePositiveRateStaysNearTheTarget() {
+    NegativeIndex idx = index(20_000, 0.01);
+    for (int i = 0; i < 20_000; i++) {
+      idx.add("neg" + i + ".example");
+      if (i % 5000 == 0) now.addAndGet(75_000); // spread over the slices
+    }
+    for (int i = 0; i < 20_000; i++) assertTrue(idx.mightContain("neg" + i + ".example"));
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) if (idx.mightContain("pos" + i + ".example")) falsePositives++;
+    assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+    assertTrue(idx.sizeInBytes() < 20_000 * 3, "bytes: " + idx.sizeInBytes());
+  }
+
+  @Test
+  void roundTripsThroughAFile() throws Exception {
+    NegativeIndex idx = index(1000, 0.01);
+    idx.add("gone.example");
+    Path file = Files.createTempFile("aid-negative", ".idx");
+    try {
+      idx.save(file);
+      NegativeIndex loaded = NegativeIndex.load(file, now::get);
+      assertTrue(loaded.mightContain("gone.example"));
+      assertFalse(loaded.mightContain("present.example"));
+      now.addAndGet(400_000);
+      assertFalse(loaded.mightContain("gone.example"));
+
+      Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+      assertThrows(java.io.IOException.class, () -> NegativeIndex.load(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void discoverySkipsDomainsWithoutARecord() throws Exception {
+    try (StubDohServer doh = new StubDohServer(0, 200); StubAgentServer agent = new StubAgentServer(0)) {
+      doh.txt = null;
+      Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+      opts.dohEndpoints = List.of(doh.url());
+      opts.httpClient = agent.httpClient();
+      opts.timeout = Duration.ofSeconds(5);
+      opts.wellKnownTimeout = Duration.ofSeconds(5);
+      opts.negativeIndex = new NegativeIndex(1000, 0.01);
+
+      agent.wellKnownStatus = 404;
+      assertEquals("ERR_FALLBACK_FAILED", Discovery.tryDiscover(agent.authority(), opts).errorCode());
+      int hits = doh.hits.get();
+      DiscoveryOutcome skipped = Discovery.tryDiscover(agent.authority(), opts);
+      assertEquals("ERR_NO_RECORD", skipped.errorCode());
+      assertEquals(hits, doh.hits.get());
+      assertEquals(1, agent.wellKnownHits.get());
+
+      // A failing fallback is not proof of absence
+      opts.negativeIndex = new NegativeIndex(1000, 0.01);
+      agent.wellKnownStatus = 503;
+      Discovery.tryDiscover(agent.authority(), opts);
+      assertFalse(opts.negativeIndex.mightContain(agent.authority()));
+
+      // Without the fallback an empty answer is enough, but only for lookups without the fallback
+      opts.wellKnownFallback = false;
+      assertEquals("ERR_NO_RECORD", Discovery.tryDiscover(agent.authority(), opts).errorCode());
+      hits = doh.hits.get();
+      assertEquals("ERR_NO_RECORD", Discovery.tryDiscover(agent.authority(), opts).errorCode());
+      assertEquals(hits, doh.hits.get());
+      assertFalse(opts.negativeIndex.mightContain(agent.authority()));
+
+      opts.wellKnownFallback = true;
+      agent.wellKnownStatus = 200;
+      assertTrue(Discovery.tryDiscover(agent.authority(), opts).isSuccess());
+
+      // Absence seen without DNSSEC is not trusted by a lookup that requires it
+      // ...nor indexed for one, since the stub never sets AD
+      opts.requireDnssec = true;
+      opts.wellKnownFallback = false;
+      assertEquals("ERR_NO_RECORD", Discovery.tryDiscover(agent.authority(), opts).errorCode());
+      hits = doh.hits.get();
+      assertEquals("ERR_NO_RECORD", Discovery.tryDiscover(agent.authority(), opts).errorCode());
+      assertTrue(doh.hits.get() > hits);
+    }
+  }
+
+  @Test
+  void onlyTheWellKnownStatusCountsAsNotFound() {
+    assertTrue(WellKnown.isNotFound(new WellKnown.StatusError(404)));
+    assertTrue(WellKnown.isNotFound(new WellKnown.StatusError(410)));
+    assertFalse(WellKnown.isNotFound(new WellKnown.StatusError(503)));
+    assertFalse(WellKnown.isNotFound(new AidError("ERR_FALLBACK_FAILED", "Well-known HTTP 404")));
+    // Routine in bulk discovery, so no stack trace is captured
+    assertEquals(0, new WellKnown.StatusError(404).getStackTrace().length);
+  }
+}
@@ -0,0 +1,91 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class OffHeapDiscoveryCacheTest {
+  private static Discovery.DiscoveryResult result(String domain, int ttl) {
+    AidRecord rec = new AidRecord("aid1", "https://" + domain + "/mcp", "mcp", null, "agent for " + domain, null, null, null, null);
+    return new Discovery.DiscoveryResult(rec, ttl, "_agent." + domain);
+  }
+
+  @Test
+  void storesAndReplacesPerDomainAndProtocol() {
+    OffHeapDiscoveryCache cache = new OffHeapDiscoveryCache(1 << 16, 100);
+    cache.put("a.example", null, result("a.example", 300));
+    cache.put("a.example", "mcp", result("mcp.a.example", 300));
+    assertEquals("https://a.example/mcp", cache.get("a.example", null).record.uri);
+    assertEquals("_agent.mcp.a.example", cache.get("a.example", "mcp").queryName);
+    assertNull(cache.get("b.example", null));
+
+    cache.put("a.example", null, result("a2.example", 600));
+    Discovery.DiscoveryResult r = cache.get("a.example", null);
+    assertEquals("https://a2.example/mcp", r.record.uri);
+    assertEquals(600, r.ttl);
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void expiresByTtl() throws Exception {
+    OffHeapDiscoveryCache cache = new OffHeapDiscoveryCache(1 << 16, 100);
+    cache.put("short.example", null, result("short.example", 1));
+    cache.put("long.example", null, result("long.example", 300));
+    cache.put("two.example", null, result("two.example", 2));
+    Thread.sleep(1100);
+    assertNull(cache.get("short.example", null));
+    assertEquals(299, cache.get("long.example", null).ttl);
+    assertEquals(1, cache.get("two.example", null).ttl, "a hit reports the time left");
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void evictsOldestWhenEntryLimitIsReached() {
+    OffHeapDiscoveryCache cache = new OffHeapDiscoveryCache(1 << 16, 3);
+    for (int i = 0; i < 5; i++) cache.put("d" + i + ".example", null, result("d" + i + ".example", 300));
+    assertEquals(3, cache.size());
+    assertNull(cache.get("d0.example", null));
+    assertNull(cache.get("d1.example", null));
+    for (int i = 2; i < 5; i++) assertNotNull(cache.get("d" + i + ".example", null));
+  }
+
+  @Test
+  void staysWithinByteBudgetAndNeverReturnsAnotherDomainsRecord() {
+    OffHeapDiscoveryCache cache = new OffHeapDiscoveryCache(4096, 1000);
+    Map<String, String> latest = new HashMap<>();
+    Random rnd = new Random(42);
+    int hits = 0;
+    for (int i = 0; i < 50_000; i++) {
+      String domain = "d" + rnd.nextInt(200) + ".example";
+      if (rnd.nextBoolean()) {
+        String target = domain.replace(".example", "-" + i + ".example");
+        cache.put(domain, null, result(target, 300));
+        latest.put(domain, "https://" + target + "/mcp");
+      } else {
+        Discovery.DiscoveryResult r = cache.get(domain, null);
+        if (r != null) {
+          hits++;
+          assertEquals(latest.get(domain), r.record.uri);
+        }
+      }
+    }
+    assertTrue(hits > 0);
+    assertTrue(cache.size() < 200, "4KB cannot hold every domain: " + cache.size());
+    // The most recent insert always survives
+    cache.put("last.example", null, result("last.example", 300));
+    assertNotNull(cache.get("last.example", null));
+  }
+
+  @Test
+  void tinyIndexStillMatchesByKey() {
+    OffHeapDiscoveryCache cache = new OffHeapDiscoveryCache(1 << 16, 1);
+    cache.put("x.example", null, result("x.example", 300));
+    assertNull(cache.get("y.example", null));
+    cache.put("y.example", null, result("y.example", 300));
+    assertEquals("https://y.example/mcp", cache.get("y.example", null).record.uri);
+    assertNull(cache.get("x.example", null));
+  }
+}
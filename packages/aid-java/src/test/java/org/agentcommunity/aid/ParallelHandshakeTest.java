@@ -0,0 +1,82 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParallelHandshakeTest {
+  StubDohServer doh;
+  StubAgentServer agent;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(0, 200);
+    agent = new StubAgentServer(400);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+    agent.close();
+  }
+
+  private Discovery.DiscoveryOptions options(boolean parallel) {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.httpClient = agent.httpClient();
+    opts.wellKnownFallback = false;
+    opts.timeout = Duration.ofSeconds(5);
+    opts.parallelHandshakes = parallel;
+    return opts;
+  }
+
+  private String wrongKid() { return agent.txtRecord().replace(";i=" + StubAgentServer.KID, ";i=zz"); }
+
+  private String wrongKey() throws Exception {
+    byte[] spki = KeyPairGenerator.getInstance("Ed25519").generateKeyPair().getPublic().getEncoded();
+    String other = "z" + Base58.encode(Arrays.copyOfRange(spki, spki.length - 32, spki.length));
+    return agent.txtRecord().replaceFirst(";k=[^;]+", ";k=" + other);
+  }
+
+  @Test
+  void earliestValidAnswerWinsWithHandshakesOverlapped() throws Exception {
+    doh.answers = List.of(wrongKid(), agent.txtRecord() + ";s=second", agent.txtRecord() + ";s=third");
+
+    long t0 = System.nanoTime();
+    Discovery.DiscoveryResult r = Discovery.discover(agent.authority(), options(true));
+    long parallelMs = (System.nanoTime() - t0) / 1_000_000;
+    assertEquals("second", r.record.desc);
+
+    t0 = System.nanoTime();
+    Discovery.DiscoveryResult seq = Discovery.discover(agent.authority(), options(false));
+    long sequentialMs = (System.nanoTime() - t0) / 1_000_000;
+    assertEquals("second", seq.record.desc);
+    // Sequential pays two 400ms handshakes back to back, parallel roughly one
+    assertTrue(parallelMs < sequentialMs, "parallel " + parallelMs + "ms vs sequential " + sequentialMs + "ms");
+    assertTrue(parallelMs < 750, "parallel took " + parallelMs + "ms");
+  }
+
+  @Test
+  void answerWithoutPkaAfterFailuresWinsAndLaterAnswersAreNotContacted() throws Exception {
+    doh.answers = List.of(wrongKid(), "v=aid1;u=https://plain.example.com/mcp;p=mcp", agent.txtRecord());
+    Discovery.DiscoveryResult r = Discovery.discover(agent.authority(), options(true));
+    assertEquals("https://plain.example.com/mcp", r.record.uri);
+    assertEquals(1, agent.handshakes.get());
+  }
+
+  @Test
+  void reportsSameErrorAsSequentialWhenAllFail() throws Exception {
+    doh.answers = List.of(wrongKid(), "v=aid1;p=mcp", wrongKey());
+    AidError seq = assertThrows(AidError.class, () -> Discovery.discover(agent.authority(), options(false)));
+    AidError par = assertThrows(AidError.class, () -> Discovery.discover(agent.authority(), options(true)));
+    assertEquals(seq.errorCode, par.errorCode);
+    assertEquals(seq.getMessage(), par.getMessage());
+    assertEquals("PKA signature verification failed", par.getMessage());
+  }
+}
@@ -0,0 +1,225 @@
+package org.agentcommunity.aid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cross-SDK performance parity runner: replays {@code test-fixtures/golden.json} through {@link
+ * Parser#parse} and the handshake vectors through signature header parsing and verification, and
+ * prints results in the shared {@code test-fixtures/benchmark-result.schema.json} format.
+ *
+ * <p>Run with {@code ./gradlew :aid-java:parityBenchmark -Pargs="--time-ms=2000 --out=build/bench-java.json"}.
+ */
+public final class ParityBenchmark {
+  static final class Config {
+    long warmupMs = 500;
+    long timeMs = 2000;
+    Path out; // null: stdout
+
+    static Config fromArgs(String[] args) {
+      Config c = new Config();
+      for (String a : args) {
+        String[] kv = a.replaceFirst("^--", "").split("=", 2);
+        String v = kv.length > 1 ? kv[1] : "";
+        switch (kv[0]) {
+          case "warmup-ms": c.warmupMs = Long.parseLong(v); break;
+          case "time-ms": c.timeMs = Long.parseLong(v); break;
+          case "out": c.out = Path.of(v); break;
+          default: throw new IllegalArgumentException("Unknown flag: " + a);
+        }
+      }
+      return c;
+    }
+  }
+
+  /** One benchmark case; {@link #run} returns "ok" or the error code it ended with. */
+  static final class Case {
+    final String suite;
+    final String name;
+    final String expected;
+    final java.util.function.Supplier<String> op;
+    Case(String suite, String name, String expected, java.util.function.Supplier<String> op) {
+      this.suite = suite; this.name = name; this.expected = expected; this.op = op;
+    }
+    String run() { return op.get(); }
+  }
+
+  static final class Result {
+    final Case c;
+    final String outcome;
+    final long iterations;
+    final double nsPerOp;
+    final Double bytesPerOp;
+    Result(Case c, String outcome, long iterations, double nsPerOp, Double bytesPerOp) {
+      this.c = c; this.outcome = outcome; this.iterations = iterations; this.nsPerOp = nsPerOp; this.bytesPerOp = bytesPerOp;
+    }
+  }
+
+  static volatile String sink;
+
+  static List<Case> cases() throws Exception {
+    List<Case> out = new ArrayList<>();
+    Path path = Path.of("test-fixtures/golden.json");
+    if (!Files.exists(path)) path = Path.of("../../test-fixtures/golden.json");
+    Map<String, Object> golden = Json.asObject(Json.parse(Files.readString(path, StandardCharsets.UTF_8)));
+    for (Object o : (List<?>) golden.get("records")) {
+      Map<String, Object> rec = Json.asObject(o);
+      out.add(parserCase((String) rec.get("name"), (String) rec.get("raw"), "ok"));
+    }
+    for (Object o : (List<?>) golden.get("invalid")) {
+      Map<String, Object> rec = Json.asObject(o);
+      out.add(parserCase((String) rec.get("name"), (String) rec.get("raw"), (String) rec.get("errorCode")));
+    }
+    out.addAll(handshakeCases());
+    return out;
+  }
+
+  private static Case parserCase(String name, String raw, String expected) {
+    return new Case("parser", name, expected, () -> {
+      try {
+        Parser.parse(raw);
+        return "ok";
+      } catch (AidError e) {
+        return e.errorCode;
+      }
+    });
+  }
+
+  /** The handshake vectors applied to a signed response: {@code overrideAlg}/{@code overrideKeyId} alter what the server claims. */
+  private static List<Case> handshakeCases() throws Exception {
+    KeyPair kp = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    byte[] spki = kp.getPublic().getEncoded();
+    String pka = "z" + Base58.encode(Arrays.copyOfRange(spki, spki.length - 32, spki.length));
+    String uri = "https://api.example.com/mcp";
+    String host = "api.example.com";
+    String challenge = Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+    String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+
+    List<Case> out = new ArrayList<>();
+    Path vectors = Path.of("src/test/resources/vectors.json");
+    String json;
+    if (Files.exists(vectors)) {
+      json = Files.readString(vectors, StandardCharsets.UTF_8);
+    } else {
+      try (InputStream in = ParityBenchmark.class.getResourceAsStream("/vectors.json")) {
+        if (in == null) throw new IOException("missing vectors.json");
+        json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+    }
+    for (Object o : (List<?>) Json.parse(json)) {
+      Map<String, Object> v = Json.asObject(o);
+      String alg = v.get("overrideAlg") != null ? ((String) v.get("overrideAlg")).toLowerCase(Locale.ROOT) : "ed25519";
+      String keyid = v.get("overrideKeyId") != null ? (String) v.get("overrideKeyId") : "g1";
+      String params = "(\"AID-Challenge\" \"@method\" \"@target-uri\" \"host\" \"date\");created=" + Instant.now().getEpochSecond()
+          + ";keyid=" + keyid + ";alg=\"" + alg + "\"";
+      String base = "\"AID-Challenge\": " + challenge + "\n\"@method\": GET\n\"@target-uri\": " + uri + "\n\"host\": " + host
+          + "\n\"date\": " + date + "\n\"@signature-params\": " + params;
+      Signature s = Signature.getInstance("Ed25519");
+      s.initSign(kp.getPrivate());
+      s.update(base.getBytes(StandardCharsets.UTF_8));
+      String sigInput = "sig=" + params;
+      String sig = "sig=:" + Base64.getEncoder().encodeToString(s.sign()) + ":";
+      String expected = "pass".equals(v.get("expect")) ? "ok" : "ERR_SECURITY";
+      out.add(new Case("handshake", (String) v.get("id"), expected, () -> {
+        try {
+          Handshake.verifySignature(Handshake.parseSignatureHeaders(sigInput, sig, date), uri, host, pka, "g1", challenge, date);
+          return "ok";
+        } catch (AidError e) {
+          return e.errorCode;
+        }
+      }));
+    }
+    return out;
+  }
+
+  static List<Result> run(Config cfg) throws Exception {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    com.sun.management.ThreadMXBean mx = bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported() ? (com.sun.management.ThreadMXBean) bean : null;
+    long tid = Thread.currentThread().threadId();
+    List<Result> results = new ArrayList<>();
+    for (Case c : cases()) {
+      String outcome = c.run();
+      if (!outcome.equals(c.expected)) {
+        throw new IllegalStateException(c.suite + "/" + c.name + ": expected " + c.expected + " but got " + outcome);
+      }
+      loop(c, cfg.warmupMs);
+      long bytesBefore = mx != null ? mx.getThreadAllocatedBytes(tid) : 0;
+      long start = System.nanoTime();
+      long ops = loop(c, cfg.timeMs);
+      long elapsed = System.nanoTime() - start;
+      Double bytes = mx != null ? (double) (mx.getThreadAllocatedBytes(tid) - bytesBefore) / ops : null;
+      results.add(new Result(c, outcome, ops, (double) elapsed / ops, bytes));
+    }
+    return results;
+  }
+
+  private static long loop(Case c, long millis) {
+    long end = System.nanoTime() + millis * 1_000_000L;
+    long ops = 0;
+    do {
+      for (int i = 0; i < 256; i++) sink = c.run();
+      ops += 256;
+    } while (System.nanoTime() < end);
+    return ops;
+  }
+
+  static String toJson(List<Result> results) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n  \"schemaVersion\": 1,\n  \"sdk\": \"java\",\n  \"sdkVersion\": ")
+        .append(quote(ParityBenchmark.class.getPackage().getImplementationVersion()))
+        .append(",\n  \"runtime\": ").append(quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version")))
+        .append(",\n  \"os\": ").append(quote(System.getProperty("os.name") + " " + System.getProperty("os.arch")))
+        .append(",\n  \"timestamp\": ").append(quote(Instant.now().toString()))
+        .append(",\n  \"results\": [");
+    for (int i = 0; i < results.size(); i++) {
+      Result r = results.get(i);
+      sb.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.ROOT,
+          "    {\"suite\": %s, \"case\": %s, \"outcome\": %s, \"iterations\": %d, \"nsPerOp\": %.1f, \"opsPerSec\": %.0f, \"bytesPerOp\": %s}",
+          quote(r.c.suite), quote(r.c.name), quote(r.outcome), r.iterations, r.nsPerOp, 1e9 / r.nsPerOp,
+          r.bytesPerOp == null ? "null" : String.format(Locale.ROOT, "%.0f", r.bytesPerOp)));
+    }
+    return sb.append("\n  ]\n}\n").toString();
+  }
+
+  private static String quote(String s) {
+    if (s == null) return "null";
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') sb.append('\\').append(c);
+      else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+      else sb.append(c);
+    }
+    return sb.append('"').toString();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config cfg = Config.fromArgs(args);
+    String json = toJson(run(cfg));
+    if (cfg.out == null) {
+      System.out.print(json);
+    } else {
+      if (cfg.out.getParent() != null) Files.createDirectories(cfg.out.getParent());
+      Files.writeString(cfg.out, json, StandardCharsets.UTF_8);
+      System.out.println("Wrote " + cfg.out);
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Short run of {@link ParityBenchmark}; checks coverage of the fixtures and the output shape. */
+public class ParityBenchmarkTest {
+  @Test
+  void coversEveryFixtureAndEmitsTheSharedSchema() throws Exception {
+    ParityBenchmark.Config cfg = ParityBenchmark.Config.fromArgs(new String[] {"--warmup-ms=5", "--time-ms=5"});
+    String json = ParityBenchmark.toJson(ParityBenchmark.run(cfg));
+
+    Map<String, Object> root = Json.asObject(Json.parse(json));
+    assertEquals("1", Json.asString(root.get("schemaVersion"), "schemaVersion"));
+    assertEquals("java", root.get("sdk"));
+    Set<String> cases = new HashSet<>();
+    for (Object o : (List<?>) root.get("results")) {
+      Map<String, Object> r = Json.asObject(o);
+      cases.add(r.get("suite") + "/" + r.get("case"));
+      assertTrue(Double.parseDouble(Json.asString(r.get("nsPerOp"), "nsPerOp")) > 0);
+      assertTrue(r.containsKey("bytesPerOp"));
+    }
+    assertTrue(cases.contains("parser/simple"), cases.toString());
+    assertTrue(cases.contains("parser/pka-missing-kid"), cases.toString());
+    assertTrue(cases.contains("handshake/happy-path"), cases.toString());
+    assertTrue(cases.contains("handshake/kid-mismatch"), cases.toString());
+    assertEquals(ParityBenchmark.cases().size(), cases.size());
+  }
+}
@@ -0,0 +1,107 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PrefetchTest {
+  StubDohServer doh;
+  StubAgentServer agent;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(50, 200);
+    agent = new StubAgentServer(0);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+    agent.close();
+  }
+
+  private Discovery.DiscoveryOptions options() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.httpClient = agent.httpClient();
+    opts.wellKnownFallback = false;
+    opts.timeout = Duration.ofSeconds(5);
+    opts.cache = new InMemoryDiscoveryCache();
+    return opts;
+  }
+
+  @Test
+  void warmsCacheSoLaterDiscoveriesSkipDnsAndHandshake() {
+    doh.txt = agent.txtRecord();
+    Discovery.DiscoveryOptions opts = options();
+    List<Discovery.DomainSpec> specs = List.of(
+        Discovery.DomainSpec.of("a.example.com"),
+        Discovery.DomainSpec.of("b.example.com"),
+        new Discovery.DomainSpec("c.example.com", "mcp"));
+
+    Discovery.PrefetchSummary summary = Discovery.prefetch(specs, opts, 2);
+    assertEquals(3, summary.attempted);
+    assertEquals(3, summary.succeeded);
+    assertTrue(summary.failures.isEmpty());
+    assertEquals(3, agent.handshakes.get());
+    assertEquals(2, doh.maxActive.get(), "concurrency limit");
+
+    int dohHits = doh.hits.get();
+    Discovery.DiscoveryResult r = Discovery.discover("a.example.com", opts);
+    assertEquals(agent.agentUri(), r.record.uri);
+    opts.protocol = "mcp";
+    assertEquals("_agent._mcp.c.example.com", Discovery.discover("c.example.com", opts).queryName);
+    assertEquals(dohHits, doh.hits.get());
+    assertEquals(3, agent.handshakes.get());
+  }
+
+  @Test
+  void requireDnssecDoesNotTrustTheCache() {
+    Discovery.DiscoveryOptions opts = options();
+    Discovery.discover("example.com", opts); // cached without DNSSEC
+    opts.requireDnssec = true;
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover("example.com", opts));
+    assertEquals("ERR_SECURITY", e.errorCode); // the stub never sets AD
+  }
+
+  @Test
+  void reportsFailuresWithoutThrowing() {
+    doh.status = 503;
+    Discovery.PrefetchSummary summary = Discovery.prefetch(
+        List.of(Discovery.DomainSpec.of("a.example.com"), Discovery.DomainSpec.of("b.example.com")), options());
+    assertEquals(2, summary.attempted);
+    assertEquals(0, summary.succeeded);
+    assertEquals("ERR_DNS_LOOKUP_FAILED", summary.failures.get(Discovery.DomainSpec.of("b.example.com")).errorCode);
+  }
+
+  @Test
+  void cacheHonoursTtlAndCapacity() throws Exception {
+    InMemoryDiscoveryCache cache = new InMemoryDiscoveryCache(2);
+    AidRecord rec = Parser.parse(StubDohServer.RECORD);
+    cache.put("a", null, new Discovery.DiscoveryResult(rec, 1, "_agent.a"));
+    cache.put("a", "mcp", new Discovery.DiscoveryResult(rec, 300, "_agent._mcp.a"));
+    InMemoryDiscoveryCache shortLived = new InMemoryDiscoveryCache();
+    shortLived.put("t", null, new Discovery.DiscoveryResult(rec, 2, "_agent.t"));
+    assertEquals(2, shortLived.get("t", null).ttl);
+    assertEquals("_agent.a", cache.get("a", null).queryName);
+    assertEquals("_agent._mcp.a", cache.get("a", "mcp").queryName);
+
+    Thread.sleep(1100);
+    assertNull(cache.get("a", null));
+    assertNotNull(cache.get("a", "mcp"));
+    assertEquals(1, shortLived.get("t", null).ttl, "a hit reports the time left");
+    assertEquals(299, cache.get("a", "mcp").ttl);
+
+    cache.put("b", null, new Discovery.DiscoveryResult(rec, 300, "_agent.b"));
+    assertNotNull(cache.get("a", "mcp")); // now more recently used than b
+    cache.put("c", null, new Discovery.DiscoveryResult(rec, 300, "_agent.c"));
+    assertEquals(2, cache.size());
+    assertEquals("_agent.c", cache.get("c", null).queryName);
+    assertNotNull(cache.get("a", "mcp"));
+    assertNull(cache.get("b", null));
+  }
+}
@@ -0,0 +1,204 @@
+package org.agentcommunity.aid;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Signature;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * In-process HTTPS agent on {@code https://localhost:<port>}: serves {@code /.well-known/agent} and
+ * an {@code /mcp} endpoint that signs the {@code AID-Challenge} handshake with Ed25519. Uses a
+ * throwaway self-signed certificate; clients must use {@link #httpClient()}.
+ */
+final class StubAgentServer implements AutoCloseable {
+  static final String KID = "g1";
+
+  // Matches the Date header com.sun.net.httpserver stamps on every response
+  private static final DateTimeFormatter SERVER_DATE =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US).withZone(ZoneId.of("GMT"));
+
+  final AtomicInteger handshakes = new AtomicInteger();
+  final AtomicInteger wellKnownHits = new AtomicInteger();
+  volatile long delayMs;
+  /** Fraction of requests answered with HTTP 503. */
+  volatile double errorRate;
+  /** Sent on well-known responses when set; a matching If-None-Match gets a 304. */
+  volatile String etag;
+  volatile String cacheControl;
+  /** Status for {@code /.well-known/agent}; anything but 200 is sent without a body. */
+  volatile int wellKnownStatus = 200;
+  final AtomicInteger notModified = new AtomicInteger();
+
+  private final KeyPair signingKey;
+  private final String pka;
+  private final SSLContext ssl;
+  private final HttpsServer server;
+  private final ExecutorService pool = Executors.newCachedThreadPool();
+  private final HttpClient client;
+
+  StubAgentServer(long delayMs) throws Exception {
+    this.delayMs = delayMs;
+    signingKey = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    byte[] spki = signingKey.getPublic().getEncoded();
+    byte[] raw = java.util.Arrays.copyOfRange(spki, spki.length - 32, spki.length);
+    pka = "z" + Base58.encode(raw);
+    ssl = selfSignedContext();
+    client = HttpClient.newBuilder().sslContext(ssl).followRedirects(HttpClient.Redirect.NEVER).build();
+
+    // Whichever loopback address "localhost" resolves to first, since clients connect by that name
+    server = HttpsServer.create(new InetSocketAddress(InetAddress.getByName("localhost"), 0), 0);
+    server.setHttpsConfigurator(new HttpsConfigurator(ssl));
+    server.setExecutor(pool);
+    server.createContext("/.well-known/agent", ex -> {
+      wellKnownHits.incrementAndGet();
+      if (!simulate(ex)) return;
+      if (wellKnownStatus != 200) {
+        send(ex, wellKnownStatus, new byte[0]);
+        return;
+      }
+      if (cacheControl != null) ex.getResponseHeaders().set("Cache-Control", cacheControl);
+      if (etag != null) {
+        ex.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+          notModified.incrementAndGet();
+          send(ex, 304, new byte[0]);
+          return;
+        }
+      }
+      String json = "{\"v\":\"aid1\",\"u\":\"" + agentUri() + "\",\"p\":\"mcp\",\"k\":\"" + pka + "\",\"i\":\"" + KID + "\"}";
+      ex.getResponseHeaders().set("Content-Type", "application/json");
+      send(ex, 200, json.getBytes(StandardCharsets.UTF_8));
+    });
+    server.createContext("/mcp", ex -> {
+      handshakes.incrementAndGet();
+      if (!simulate(ex)) return;
+      String challenge = ex.getRequestHeaders().getFirst("AID-Challenge");
+      if (challenge == null) {
+        send(ex, 400, new byte[0]);
+        return;
+      }
+      // The server overwrites Date when sending headers; don't sign across a second boundary
+      long ms = System.currentTimeMillis() % 1000;
+      if (ms > 900) sleep(1000 - ms);
+      String date = SERVER_DATE.format(Instant.now());
+      long created = Instant.now().getEpochSecond();
+      String params = "(\"AID-Challenge\" \"@method\" \"@target-uri\" \"host\" \"date\");created=" + created
+          + ";keyid=" + KID + ";alg=\"ed25519\"";
+      String base = "\"AID-Challenge\": " + challenge + "\n"
+          + "\"@method\": GET\n"
+          + "\"@target-uri\": " + agentUri() + "\n"
+          + "\"host\": " + authority() + "\n"
+          + "\"date\": " + date + "\n"
+          + "\"@signature-params\": " + params;
+      try {
+        Signature s = Signature.getInstance("Ed25519");
+        s.initSign(signingKey.getPrivate());
+        s.update(base.getBytes(StandardCharsets.UTF_8));
+        ex.getResponseHeaders().set("Signature-Input", "sig=" + params);
+        ex.getResponseHeaders().set("Signature", "sig=:" + Base64.getEncoder().encodeToString(s.sign()) + ":");
+      } catch (Exception e) {
+        send(ex, 500, new byte[0]);
+        return;
+      }
+      send(ex, 200, new byte[0]);
+    });
+    server.start();
+  }
+
+  /** Applies the configured latency and error rate; false when an error response was sent. */
+  private boolean simulate(HttpExchange ex) throws IOException {
+    if (delayMs > 0) sleep(delayMs);
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      send(ex, 503, new byte[0]);
+      return false;
+    }
+    return true;
+  }
+
+  private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+    try (InputStream in = ex.getRequestBody()) {
+      in.readAllBytes();
+    }
+    ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    if (body.length > 0) try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+    ex.close();
+  }
+
+  private static void sleep(long ms) {
+    try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+  }
+
+  private static SSLContext selfSignedContext() throws Exception {
+    Path dir = Files.createTempDirectory("aid-stub-tls");
+    Path store = dir.resolve("stub.p12");
+    String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+    Process p = new ProcessBuilder(keytool, "-genkeypair", "-alias", "stub", "-keyalg", "EC", "-groupname", "secp256r1",
+        "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1,ip:::1", "-validity", "2",
+        "-keystore", store.toString(), "-storetype", "PKCS12", "-storepass", "changeit")
+        .redirectErrorStream(true).start();
+    String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    if (p.waitFor() != 0) throw new IllegalStateException("keytool failed: " + out);
+    KeyStore ks = KeyStore.getInstance("PKCS12");
+    try (InputStream in = Files.newInputStream(store)) {
+      ks.load(in, "changeit".toCharArray());
+    }
+    Files.delete(store);
+    Files.delete(dir);
+    KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    kmf.init(ks, "changeit".toCharArray());
+    TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    tmf.init(ks);
+    SSLContext ctx = SSLContext.getInstance("TLS");
+    ctx.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+    return ctx;
+  }
+
+  /** Domain to discover: {@code localhost:<port>}, so the well-known fallback reaches this server. */
+  String authority() {
+    return "localhost:" + server.getAddress().getPort();
+  }
+
+  String agentUri() {
+    return "https://" + authority() + "/mcp";
+  }
+
+  /** TXT record advertising this agent with its PKA. */
+  String txtRecord() {
+    return "v=aid1;u=" + agentUri() + ";p=mcp;k=" + pka + ";i=" + KID;
+  }
+
+  /** Client that trusts this server's certificate and does not follow redirects. */
+  HttpClient httpClient() {
+    return client;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    pool.shutdownNow();
+  }
+}
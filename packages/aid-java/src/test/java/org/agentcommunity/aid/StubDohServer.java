@@ -0,0 +1,83 @@
+package org.agentcommunity.aid;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** In-process DoH JSON endpoint answering every TXT query with the same record. */
+final class StubDohServer implements AutoCloseable {
+  static final String RECORD = "v=aid1;uri=https://api.example.com/mcp;p=mcp";
+
+  final AtomicInteger hits = new AtomicInteger();
+  final AtomicInteger active = new AtomicInteger();
+  final AtomicInteger maxActive = new AtomicInteger();
+  volatile long delayMs;
+  volatile int status = 200;
+  volatile String txt = RECORD;
+  /** When set, one answer per entry instead of {@code txt}. */
+  volatile List<String> answers;
+  volatile int ttl = 321;
+  /** Fraction of queries answered with HTTP 503. */
+  volatile double errorRate;
+
+  private final HttpServer server;
+  private final ExecutorService pool = Executors.newCachedThreadPool();
+
+  StubDohServer(long delayMs, int status) throws IOException {
+    this.delayMs = delayMs;
+    this.status = status;
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(pool);
+    server.createContext("/dns-query", ex -> {
+      hits.incrementAndGet();
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try {
+        try { Thread.sleep(this.delayMs); } catch (InterruptedException ignored) { }
+        // Before replying: once the client has the answer it may start its next query
+        active.decrementAndGet();
+        int code = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate ? 503 : this.status;
+        byte[] body = answer().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/dns-json");
+        ex.sendResponseHeaders(code, code == 200 ? body.length : -1);
+        if (code == 200) try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+      } catch (IOException ignored) {
+        // client cancelled the losing request
+      } finally {
+        ex.close();
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * {@code txt} is DNS presentation text inside the outer quotes, e.g. {@code a" "b} for two
+   * strings; null answers with no records.
+   */
+  private String answer() {
+    List<String> records = answers != null ? answers : txt != null ? List.of(txt) : List.of();
+    StringBuilder sb = new StringBuilder("{\"Status\":0,\"AD\":false,\"Answer\":[");
+    for (int i = 0; i < records.size(); i++) {
+      String data = "\\\"" + records.get(i).replace("\"", "\\\"") + "\\\"";
+      if (i > 0) sb.append(',');
+      sb.append("{\"data\":\"").append(data).append("\",\"TTL\":").append(ttl).append('}');
+    }
+    return sb.append("]}").toString();
+  }
+
+  String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/dns-query";
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    pool.shutdownNow();
+  }
+}
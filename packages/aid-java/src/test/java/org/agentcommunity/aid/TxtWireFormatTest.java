@@ -0,0 +1,112 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TxtWireFormatTest {
+  static final String[] RECORDS = {
+    "v=aid1;uri=https://api.example.com/mcp;p=mcp",
+    "v=aid1;uri=docker://myimage;proto=local;desc=Local Docker Agent",
+    "v=aid1;uri=https://api.example.com/mcp;p=mcp;d=https://docs.example.com/agent;e=2099-01-01T00:00:00Z",
+    "v=aid1;uri=https://api.example.com/mcp;p=mcp;k=z7rW8rTq8o4mM6vVf7w1k3m4uQn9p2YxCAbcDeFgHiJ;i=g1",
+    " V=aid1 ; URI = https://x.example.com ;P=a2a;unknown=1;;desc=Grüße ",
+  };
+
+  /** Splits {@code txt} into length-prefixed character-strings of at most {@code chunk} bytes. */
+  static ByteBuffer rdata(String txt, int chunk) {
+    byte[] bytes = txt.getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < bytes.length; i += chunk) {
+      int len = Math.min(chunk, bytes.length - i);
+      out.write(len);
+      out.write(bytes, i, len);
+    }
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  static void assertSameRecord(AidRecord expected, AidRecord actual) {
+    assertEquals(expected.v, actual.v);
+    assertEquals(expected.uri, actual.uri);
+    assertEquals(expected.proto, actual.proto);
+    assertEquals(expected.auth, actual.auth);
+    assertEquals(expected.desc, actual.desc);
+    assertEquals(expected.docs, actual.docs);
+    assertEquals(expected.dep, actual.dep);
+    assertEquals(expected.pka, actual.pka);
+    assertEquals(expected.kid, actual.kid);
+  }
+
+  @Test
+  void joinsCharacterStringsAtAnyBoundary() {
+    for (String txt : RECORDS) {
+      AidRecord expected = Parser.parse(txt);
+      for (int chunk : new int[] {1, 2, 7, 16, 255}) {
+        ByteBuffer buf = rdata(txt, chunk);
+        assertSameRecord(expected, Parser.parse(buf));
+        assertEquals(0, buf.position());
+      }
+    }
+  }
+
+  @Test
+  void readsOnlyTheBufferSlice() {
+    ByteBuffer inner = rdata(RECORDS[0], 10);
+    ByteBuffer outer = ByteBuffer.allocate(inner.remaining() + 8);
+    outer.put(new byte[] {9, 9, 9, 9}).put(inner).put(new byte[] {1, 2, 3, 4});
+    outer.position(4).limit(outer.capacity() - 4);
+    assertSameRecord(Parser.parse(RECORDS[0]), Parser.parse(outer));
+  }
+
+  @Test
+  void reportsTheSameErrorsAsTheStringPath() {
+    String[] invalid = {
+      "v=aid1;uri=https://x;proto=mcp;proto=mcp",
+      "v=aid1;uri=https://x;proto=mcp;p=mcp",
+      "v=aid1;uri=;proto=local",
+      "v=aid1;uri=https://x;proto=mcp;novalue",
+      "v=aid1;uri=http://x;proto=mcp",
+      "v=aid1;uri=https://x;proto=unknown",
+      "",
+    };
+    for (String txt : invalid) {
+      AidError expected = assertThrows(AidError.class, () -> Parser.parse(txt));
+      AidError actual = assertThrows(AidError.class, () -> Parser.parse(rdata(txt, 5)));
+      assertEquals(expected.errorCode, actual.errorCode, txt);
+      assertEquals(expected.getMessage(), actual.getMessage(), txt);
+    }
+  }
+
+  @Test
+  void rejectsTruncatedCharacterStrings() {
+    ByteBuffer buf = ByteBuffer.wrap(new byte[] {20, 'v', '=', 'a'});
+    AidError e = assertThrows(AidError.class, () -> Parser.parse(buf));
+    assertEquals("ERR_INVALID_TXT", e.errorCode);
+  }
+
+  @Test
+  void joinsPresentationFormatStrings() {
+    assertEquals("abc", Discovery.joinTxtStrings("\"a\" \"bc\""));
+    assertEquals("say \"hi\";x", Discovery.joinTxtStrings("\"say \\\"hi\\\";\" \"x\""));
+    assertEquals("é", Discovery.joinTxtStrings("\"\\195\\169\""));
+    assertEquals("plain", Discovery.joinTxtStrings("plain"));
+    assertEquals("a\" b", Discovery.joinTxtStrings("\"a\" b\""));
+  }
+
+  @Test
+  void discoveryJoinsMultiStringAnswers() throws Exception {
+    try (StubDohServer doh = new StubDohServer(0, 200)) {
+      doh.txt = "v=aid1;uri=https://api.exa\" \"mple.com/mcp;p=mcp";
+      Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+      opts.dohEndpoints = List.of(doh.url());
+      opts.wellKnownFallback = false;
+      opts.timeout = Duration.ofSeconds(5);
+      assertEquals("https://api.example.com/mcp", Discovery.discover("example.com", opts).record.uri);
+    }
+  }
+}
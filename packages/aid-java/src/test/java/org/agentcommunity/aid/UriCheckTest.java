@@ -0,0 +1,82 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+public class UriCheckTest {
+  /** The java.net.URI-based checks Parser used before UriCheck. */
+  static boolean reference(String uri, String scheme) {
+    try {
+      URI u = URI.create(uri);
+      return scheme.equals(u.getScheme()) && u.getHost() != null;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  static void assertAgrees(String uri, String scheme) {
+    assertEquals(reference(uri, scheme), UriCheck.hasHost(uri, scheme), uri);
+  }
+
+  @Test
+  void agreesOnHandPickedEdgeCases() {
+    String[] rests = {
+      "x", "api.example.com/mcp", "API.Example.COM", "a-b.c-d.io:8443/p?q=1#f", "a.b.", "a..b", "-a.com",
+      "a-.com", "1.2.3.4", "1.2.3.4:80/x", "1.2.3.999", "1.example.com", "123", "ex_ample.com", "[::1]:443/",
+      "user@host.com", "host.com:", "host.com:99999", "host.com:9999999999", "host.com:80x", "host/pa th",
+      "host/%2F%zz", "host/%2", "host/%41?x=%7e#frag", "host?a=[b]", "host/[x]", "host#a#b", "host#a?b",
+      "hôst.com", "host.com/é", "", "/path", "host\\x", "host/<x>", "host/a|b", "host/{x}", "host/^", "host/`",
+      "host.com/a;b,c$d&e=f+g@h:i", "host.com/!~*'()", "a.b.c.d.e.f.g", "x.1a", "x.a1", "x.y-z",
+    };
+    for (String rest : rests) {
+      assertAgrees("https://" + rest, "https");
+      assertAgrees("wss://" + rest, "wss");
+    }
+  }
+
+  @Test
+  void agreesOnTheGoldenCorpus() throws IOException {
+    Path golden = Path.of("test-fixtures/golden.json");
+    if (!Files.exists(golden)) golden = Path.of("../../test-fixtures/golden.json");
+    String json = Files.readString(golden, StandardCharsets.UTF_8);
+    Matcher m = Pattern.compile("(?:https|wss)://[^;\"\\s]*").matcher(json);
+    int seen = 0;
+    while (m.find()) {
+      String uri = m.group();
+      assertAgrees(uri, uri.startsWith("wss") ? "wss" : "https");
+      seen++;
+    }
+    assertTrue(seen > 0);
+  }
+
+  @Test
+  void agreesOnFuzzedInputs() {
+    String alphabet = "abcXYZ019-._~!*'()%:@&=+$,;/?#[] \"<>\\^`{|}é\u0000";
+    Random rnd = new Random(0xA1D);
+    List<String> inputs = new ArrayList<>();
+    for (int i = 0; i < 200_000; i++) {
+      StringBuilder sb = new StringBuilder();
+      int len = rnd.nextInt(24);
+      for (int j = 0; j < len; j++) {
+        // Bias toward well-formed hosts so the fast path is exercised, not just the rejects
+        sb.append(rnd.nextInt(3) == 0 ? alphabet.charAt(rnd.nextInt(alphabet.length())) : "ab1.-:/".charAt(rnd.nextInt(7)));
+      }
+      inputs.add(sb.toString());
+    }
+    for (String rest : inputs) {
+      assertAgrees("https://" + rest, "https");
+      assertAgrees("wss://" + rest, "wss");
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WellKnownHedgeTest {
+  StubDohServer doh;
+  StubAgentServer agent;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(600, 200);
+    agent = new StubAgentServer(300);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+    agent.close();
+  }
+
+  private Discovery.DiscoveryOptions options(Duration hedgeAfter) {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.httpClient = agent.httpClient();
+    opts.timeout = Duration.ofSeconds(5);
+    opts.wellKnownTimeout = Duration.ofSeconds(5);
+    opts.wellKnownHedgeAfter = hedgeAfter;
+    return opts;
+  }
+
+  @Test
+  void fallbackOverlapsSlowDns() {
+    doh.txt = null;
+    // Warm up TLS and the DoH connection so both runs pay the same setup
+    Discovery.discover(agent.authority(), options(null));
+
+    long t0 = System.nanoTime();
+    Discovery.DiscoveryResult plain = Discovery.discover(agent.authority(), options(null));
+    long plainMs = (System.nanoTime() - t0) / 1_000_000;
+
+    t0 = System.nanoTime();
+    Discovery.DiscoveryResult hedged = Discovery.discover(agent.authority(), options(Duration.ofMillis(50)));
+    long hedgedMs = (System.nanoTime() - t0) / 1_000_000;
+
+    assertEquals(agent.agentUri(), hedged.record.uri);
+    assertEquals(plain.record.uri, hedged.record.uri);
+    assertEquals(Constants.DNS_TTL_MIN, hedged.ttl);
+    // Sequential: 600ms DNS + 300ms well-known + 300ms handshake; hedged: well-known done when DNS returns
+    assertTrue(hedgedMs < plainMs - 300, "hedged " + hedgedMs + "ms vs plain " + plainMs + "ms");
+  }
+
+  @Test
+  void positiveDnsAnswerStillWins() {
+    doh.txt = agent.txtRecord() + ";s=from-dns";
+    Discovery.DiscoveryResult r = Discovery.discover(agent.authority(), options(Duration.ofMillis(50)));
+    assertEquals("from-dns", r.record.desc);
+    assertEquals(321, r.ttl);
+  }
+
+  @Test
+  void nonFallbackErrorIsNotReplacedByEarlyFetch() {
+    doh.txt = agent.txtRecord(); // answered without AD
+    Discovery.DiscoveryOptions opts = options(Duration.ofMillis(50));
+    opts.requireDnssec = true;
+    AidError e = assertThrows(AidError.class, () -> Discovery.discover(agent.authority(), opts));
+    assertEquals("ERR_SECURITY", e.errorCode);
+  }
+
+  @Test
+  void fastDnsNeverStartsTheFetch() throws Exception {
+    doh.delayMs = 0;
+    doh.txt = agent.txtRecord();
+    Discovery.discover(agent.authority(), options(Duration.ofSeconds(2)));
+    Thread.sleep(100);
+    assertEquals(0, agent.wellKnownHits.get());
+  }
+}
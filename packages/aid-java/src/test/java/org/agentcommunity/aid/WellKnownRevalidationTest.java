@@ -0,0 +1,92 @@
+package org.agentcommunity.aid;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WellKnownRevalidationTest {
+  StubDohServer doh;
+  StubAgentServer agent;
+
+  @BeforeEach
+  void start() throws Exception {
+    doh = new StubDohServer(0, 200);
+    doh.txt = null;
+    agent = new StubAgentServer(0);
+  }
+
+  @AfterEach
+  void stop() {
+    doh.close();
+    agent.close();
+  }
+
+  private Discovery.DiscoveryOptions options() {
+    Discovery.DiscoveryOptions opts = new Discovery.DiscoveryOptions();
+    opts.dohEndpoints = List.of(doh.url());
+    opts.httpClient = agent.httpClient();
+    opts.timeout = Duration.ofSeconds(5);
+    opts.wellKnownTimeout = Duration.ofSeconds(5);
+    return opts;
+  }
+
+  @Test
+  void unchangedDocumentIsRevalidatedWithoutRepeatingTheHandshake() {
+    agent.etag = "\"v1\"";
+    agent.cacheControl = "public, max-age=600";
+
+    Discovery.DiscoveryResult first = Discovery.discover(agent.authority(), options());
+    assertEquals(600, first.ttl);
+    assertEquals(1, agent.handshakes.get());
+
+    agent.cacheControl = "max-age=86400";
+    Discovery.DiscoveryResult second = Discovery.discover(agent.authority(), options());
+    assertEquals(1, agent.notModified.get());
+    assertEquals(1, agent.handshakes.get(), "a 304 must not repeat the handshake");
+    assertEquals(first.record.uri, second.record.uri);
+    assertEquals(Constants.DNS_TTL_MAX, second.ttl);
+
+    agent.etag = "\"v2\"";
+    Discovery.discover(agent.authority(), options());
+    assertEquals(1, agent.notModified.get());
+    assertEquals(2, agent.handshakes.get());
+  }
+
+  @Test
+  void handshakeForAWellKnownRecordSharesTheAgentLimit() {
+    Discovery.DiscoveryOptions opts = options();
+    opts.adaptiveConcurrency = new AdaptiveConcurrency();
+    Discovery.discover(agent.authority(), opts);
+    assertEquals(1, agent.handshakes.get());
+    assertEquals(opts.adaptiveConcurrency.initialLimit, opts.adaptiveConcurrency.limit(agent.authority()));
+
+    opts.wellKnownHedgeAfter = Duration.ZERO; // the asynchronous fetch
+    opts.adaptiveConcurrency = new AdaptiveConcurrency();
+    agent.etag = null;
+    Discovery.discover(agent.authority(), opts);
+    assertNotEquals(-1, opts.adaptiveConcurrency.limit(agent.authority()));
+  }
+
+  @Test
+  void documentWithoutCacheHeadersKeepsTheMinimumTtl() {
+    Discovery.DiscoveryResult r = Discovery.discover(agent.authority(), options());
+    assertEquals(Constants.DNS_TTL_MIN, r.ttl);
+    Discovery.discover(agent.authority(), options());
+    assertEquals(0, agent.notModified.get());
+    assertEquals(2, agent.handshakes.get());
+  }
+
+  @Test
+  void noStoreDisablesRevalidation() {
+    agent.etag = "\"v1\"";
+    agent.cacheControl = "no-store, max-age=600";
+    assertEquals(Constants.DNS_TTL_MIN, Discovery.discover(agent.authority(), options()).ttl);
+    Discovery.discover(agent.authority(), options());
+    assertEquals(0, agent.notModified.get());
+    assertEquals(2, agent.handshakes.get());
+  }
+}